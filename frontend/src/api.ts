@@ -34,25 +34,40 @@ export const api = {
   listProducts: () => request('/api/products'),
   createProduct: (body: any) => request('/api/products', { method: 'POST', body: JSON.stringify(body) }),
   getProductTemplateParams: (productId: number) => request(`/api/products/${productId}/template-params`),
+  previewProduct: (productId: number, body: any) => request(`/api/products/${productId}/preview`, { method: 'POST', body: JSON.stringify(body) }),
+  repriceProducts: (productIds: number[]) => request(`/api/products/reprice?productIds=${productIds.join(',')}`, { method: 'POST' }),
+  listRepricingJobs: () => request('/api/products/reprice'),
+  getRepricingJob: (jobId: string) => request(`/api/products/reprice/${jobId}`),
 
   // Templates
   getTemplates: () => request('/api/templates'),
   getTemplate: (id: number) => request(`/api/templates/${id}`),
   getTemplateParams: (templateId: number) => request(`/api/templates/${templateId}/params`),
+  previewTemplate: (templateId: number, body: any) => request(`/api/templates/${templateId}/preview`, { method: 'POST', body: JSON.stringify(body) }),
 
   // Quotes
   loadDraft: (projectId: number) => request(`/api/quotes/draft?projectId=${projectId}`, { method: 'POST' }),
   listQuotes: (projectId: number) => request(`/api/quotes?projectId=${projectId}`),
+  diffQuotes: (fromQuoteId: number, toQuoteId: number) =>
+    request(`/api/quotes/diff?fromQuoteId=${fromQuoteId}&toQuoteId=${toQuoteId}`),
   listQuoteItems: (quoteId: number) => request(`/api/quotes/${quoteId}/items`),
   addQuoteItem: (quoteId: number, areaId: number, productId: number, body: any) =>
     request(`/api/quotes/${quoteId}/items?areaId=${areaId}&productId=${productId}`, { method: 'POST', body: JSON.stringify(body) }),
-  updateQuoteItem: (itemId: number, body: any) => request(`/api/quotes/items/${itemId}`, { method: 'PUT', body: JSON.stringify(body) }),
-  deleteQuoteItem: (itemId: number) => request(`/api/quotes/items/${itemId}`, { method: 'DELETE' }),
+  addQuoteItems: (quoteId: number, lines: any[]) =>
+    request(`/api/quotes/${quoteId}/items/batch`, { method: 'POST', body: JSON.stringify(lines) }),
+  updateQuoteItem: (quoteId: number, itemId: number, body: any) =>
+    request(`/api/quotes/${quoteId}/items/${itemId}`, { method: 'PUT', body: JSON.stringify(body) }),
+  deleteQuoteItem: (quoteId: number, itemId: number) => request(`/api/quotes/${quoteId}/items/${itemId}`, { method: 'DELETE' }),
   recalcQuote: (quoteId: number) => request(`/api/quotes/${quoteId}/recalc`, { method: 'POST' }),
+  getQuoteDerived: (quoteId: number) => request(`/api/quotes/${quoteId}/derived`),
   submitQuote: (quoteId: number) => request(`/api/quotes/${quoteId}/submit`, { method: 'POST' }),
+  getQuoteSnapshot: (quoteId: number) => request(`/api/quotes/${quoteId}/snapshot`),
 
   // Cutlist + material
   generateCutlist: (quoteId: number) => request(`/api/quotes/${quoteId}/cutlist/generate`, { method: 'POST' }),
+  submitCutlistJob: (quoteId: number) => request(`/api/quotes/${quoteId}/cutlist/jobs`, { method: 'POST' }),
+  getCutlistJob: (jobId: string) => request(`/api/quotes/cutlist/jobs/${jobId}`),
+  cancelCutlistJob: (jobId: string) => request(`/api/quotes/cutlist/jobs/${jobId}`, { method: 'DELETE' }),
   listCutlist: (quoteId: number) => request(`/api/quotes/${quoteId}/cutlist`),
   materialSummary: (quoteId: number) => request(`/api/quotes/${quoteId}/material-summary`)
 };
@@ -61,10 +61,11 @@ export const addQuoteItem = createAsyncThunk('entities/addQuoteItem',
 )
 
 export const updateQuoteItem = createAsyncThunk('entities/updateQuoteItem',
-  ({itemId, body}:{itemId:number, body:any}) => api.updateQuoteItem(itemId, body)
+  ({quoteId, itemId, body}:{quoteId:number, itemId:number, body:any}) => api.updateQuoteItem(quoteId, itemId, body)
 )
 
-export const deleteQuoteItem = createAsyncThunk('entities/deleteQuoteItem', (itemId:number) => api.deleteQuoteItem(itemId))
+export const deleteQuoteItem = createAsyncThunk('entities/deleteQuoteItem',
+  ({quoteId, itemId}:{quoteId:number, itemId:number}) => api.deleteQuoteItem(quoteId, itemId))
 export const recalcQuote = createAsyncThunk('entities/recalcQuote', (quoteId:number) => api.recalcQuote(quoteId))
 export const submitQuote = createAsyncThunk('entities/submitQuote', (quoteId:number) => api.submitQuote(quoteId))
 
@@ -101,7 +102,7 @@ const slice = createSlice({
       if (idx >= 0) state.clients[idx] = action.payload as any
     })
     b.addCase(deleteClient.fulfilled, (state, action) => {
-      const id = (action.meta.arg as number)
+      const id = action.meta.arg
       state.clients = state.clients.filter(c => c.id !== id)
     })
     b.addCase(updateProject.fulfilled, (state, action) => {
@@ -114,7 +115,7 @@ const slice = createSlice({
     })
     b.addCase(deleteArea.fulfilled, (state, action) => {
       // action payload might be empty; rely on optimistic filtering from meta arg
-      const id = (action.meta.arg as number)
+      const id = action.meta.arg
       state.areas = state.areas.filter(a => a.id !== id)
     })
 
@@ -129,11 +130,12 @@ const slice = createSlice({
 
     b.addCase(addQuoteItem.fulfilled, (state, action) => { state.quoteItems = [action.payload as any, ...state.quoteItems] })
     b.addCase(updateQuoteItem.fulfilled, (state, action) => {
-      const idx = state.quoteItems.findIndex(i => i.id === (action.payload as any).id)
+      // An item inherited from an earlier version comes back as a new (overriding) item
+      const idx = state.quoteItems.findIndex(i => i.id === action.meta.arg.itemId)
       if (idx >= 0) state.quoteItems[idx] = action.payload as any
     })
     b.addCase(deleteQuoteItem.fulfilled, (state, action) => {
-      const id = (action.meta.arg as number)
+      const id = action.meta.arg.itemId
       state.quoteItems = state.quoteItems.filter(i => i.id !== id)
     })
 
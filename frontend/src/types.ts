@@ -19,11 +19,11 @@ export type Product = {
   template?: ProductTemplate
 }
 
-export type Quotation = { id: number; versionNo: number; status: string; currency: string; totalPrice: number; notes?: string; project: Project }
+export type Quotation = { id: number; versionNo: number; status: string; currency: string; totalPrice: number; totalPricePaise: number; notes?: string; project: Project }
 
 export type QuoteItem = {
   id: number; quotation: Quotation; area: Area; product: Product; quantity: number;
-  height?: number; width?: number; depth?: number; computedPrice: number; notes?: string;
+  height?: number; width?: number; depth?: number; computedPrice: number; computedPricePaise: number; notes?: string;
   templateParamsJson?: string; templateParams?: Record<string, number>
 }
 
@@ -195,7 +195,7 @@ export default function DimensionsStep() {
                     disabled={!canAdd || loading}
                     onClick={async () => {
                       // Delete old item and add updated one
-                      await dispatch(deleteQuoteItem(editingItemId)).unwrap()
+                      await dispatch(deleteQuoteItem({ quoteId: quoteId!, itemId: editingItemId })).unwrap()
 
                       const templateParamsObj: Record<string, number> = {}
                       Object.entries(templateParamValues).forEach(([key, val]) => {
@@ -316,7 +316,7 @@ export default function DimensionsStep() {
                       title="Remove"
                       onClick={async () => {
                         if (editingItemId === i.id) handleCancelEdit()
-                        await dispatch(deleteQuoteItem(i.id)).unwrap()
+                        await dispatch(deleteQuoteItem({ quoteId: quoteId!, itemId: i.id })).unwrap()
                         quoteId && dispatch(recalcQuote(quoteId))
                       }}
                     >
@@ -0,0 +1,33 @@
+package com.interior.config;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Errors a controller raises on purpose (ResponseStatusException) carry a message meant for the client,
+ * e.g. a template compile error; it is returned in the usual error body. Any other exception keeps
+ * the default body, without its message.
+ */
+@RestControllerAdvice
+public class ApiExceptionHandler {
+
+  @ExceptionHandler(ResponseStatusException.class)
+  public ResponseEntity<Map<String, Object>> statusException(ResponseStatusException e, HttpServletRequest request) {
+    HttpStatus status = HttpStatus.resolve(e.getStatusCode().value());
+    Map<String, Object> body = new LinkedHashMap<>();
+    body.put("timestamp", Instant.now());
+    body.put("status", e.getStatusCode().value());
+    body.put("error", status == null ? null : status.getReasonPhrase());
+    body.put("message", e.getReason());
+    body.put("path", request.getRequestURI());
+    return ResponseEntity.status(e.getStatusCode()).headers(e.getHeaders()).body(body);
+  }
+}
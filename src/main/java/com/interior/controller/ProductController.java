@@ -1,15 +1,29 @@
 package com.interior.controller;
 
+import com.interior.dto.CutlistPreview;
+import com.interior.dto.CutlistPreviewRequest;
+import com.interior.dto.RepricingJobStatus;
 import com.interior.model.Product;
 import com.interior.model.TemplateParam;
 import com.interior.repository.ProductRepository;
 import com.interior.repository.ProductTemplateRepository;
 import com.interior.repository.TemplateParamRepository;
+import com.interior.service.CutlistPreviewService;
+import com.interior.service.ExpressionEvaluatorService;
+import com.interior.service.PricingService;
+import com.interior.service.RepricingJobService;
+import com.interior.service.TemplateEngineService;
 import jakarta.validation.Valid;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
 
 import java.util.Collections;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.concurrent.RejectedExecutionException;
 
 @RestController
 @RequestMapping("/api/products")
@@ -17,13 +31,22 @@ public class ProductController {
   private final ProductRepository repo;
   private final ProductTemplateRepository templateRepository;
   private final TemplateParamRepository templateParamRepository;
+  private final CutlistPreviewService previewService;
+  private final RepricingJobService repricingJobService;
+  private final PricingService pricingService;
 
   public ProductController(ProductRepository repo,
                           ProductTemplateRepository templateRepository,
-                          TemplateParamRepository templateParamRepository) {
+                          TemplateParamRepository templateParamRepository,
+                          CutlistPreviewService previewService,
+                          RepricingJobService repricingJobService,
+                          PricingService pricingService) {
     this.repo = repo;
     this.templateRepository = templateRepository;
     this.templateParamRepository = templateParamRepository;
+    this.previewService = previewService;
+    this.repricingJobService = repricingJobService;
+    this.pricingService = pricingService;
   }
 
   @GetMapping public List<Product> list(@RequestParam(required = false) String category) {
@@ -33,24 +56,78 @@ public class ProductController {
 
   @GetMapping("/{id}") public Product get(@PathVariable Long id) { return repo.findById(id).orElseThrow(); }
 
+  // Every product write swaps in a new rate card (see PricingService)
   @PostMapping public Product create(@Valid @RequestBody Product p) {
     p.setId(null);
-    return repo.save(p);
+    p = repo.save(p);
+    pricingService.reload();
+    return p;
   }
 
+  // A rate, pricing model or template change queues a repricing of draft quotations (see /reprice)
   @PutMapping("/{id}")
   public Product update(@PathVariable Long id, @Valid @RequestBody Product p) {
     Product db = repo.findById(id).orElseThrow();
+    boolean repriced = !Objects.equals(db.getUnitRate(), p.getUnitRate())
+        || !Objects.equals(db.getPricingModel(), p.getPricingModel())
+        || !Objects.equals(templateId(db), templateId(p));
     db.setName(p.getName());
     db.setCategory(p.getCategory());
     db.setPricingModel(p.getPricingModel());
     db.setUnitRate(p.getUnitRate());
     db.setDescription(p.getDescription());
     db.setTemplate(p.getTemplate());
-    return repo.save(db);
+    db = repo.save(db);
+    pricingService.reload();
+    if (repriced) {
+      try {
+        repricingJobService.submit(List.of(id));
+      } catch (RejectedExecutionException e) {
+        // queue full: the product is saved; drafts can be repriced later through POST /reprice
+      }
+    }
+    return db;
   }
 
-  @DeleteMapping("/{id}") public void delete(@PathVariable Long id) { repo.deleteById(id); }
+  // Re-price the items of draft quotations using these products; poll the returned job for the outcome
+  @PostMapping("/reprice")
+  public ResponseEntity<RepricingJobStatus> reprice(@RequestParam List<Long> productIds) {
+    try {
+      return ResponseEntity.accepted().body(repricingJobService.submit(productIds));
+    } catch (RejectedExecutionException e) {
+      throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Too many repricing jobs queued, retry later", e);
+    }
+  }
+
+  @GetMapping("/reprice")
+  public List<RepricingJobStatus> listRepricingJobs() { return repricingJobService.list(); }
+
+  @GetMapping("/reprice/{jobId}")
+  public RepricingJobStatus getRepricingJob(@PathVariable String jobId) {
+    try {
+      return repricingJobService.get(jobId);
+    } catch (NoSuchElementException e) {
+      throw new ResponseStatusException(HttpStatus.NOT_FOUND, e.getMessage(), e);
+    }
+  }
+
+  @DeleteMapping("/reprice/{jobId}")
+  public RepricingJobStatus cancelRepricingJob(@PathVariable String jobId) {
+    try {
+      return repricingJobService.cancel(jobId);
+    } catch (NoSuchElementException e) {
+      throw new ResponseStatusException(HttpStatus.NOT_FOUND, e.getMessage(), e);
+    }
+  }
+
+  @DeleteMapping("/{id}") public void delete(@PathVariable Long id) {
+    repo.deleteById(id);
+    pricingService.reload();
+  }
+
+  private static Long templateId(Product p) {
+    return p.getTemplate() == null ? null : p.getTemplate().getId();
+  }
 
   @GetMapping("/{id}/template-params")
   public List<TemplateParam> getProductTemplateParams(@PathVariable Long id) {
@@ -60,4 +137,14 @@ public class ProductController {
     }
     return templateParamRepository.findByTemplate_IdOrderByParamName(product.getTemplate().getId());
   }
+
+  // Wizard preview: parts, sheet estimate and price for unsaved inputs; nothing is persisted
+  @PostMapping("/{id}/preview")
+  public CutlistPreview preview(@PathVariable Long id, @RequestBody CutlistPreviewRequest request) {
+    try {
+      return previewService.previewProduct(id, request);
+    } catch (TemplateEngineService.TemplateEngineException | ExpressionEvaluatorService.ExpressionException e) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+    }
+  }
 }
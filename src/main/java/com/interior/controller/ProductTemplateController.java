@@ -1,9 +1,28 @@
 package com.interior.controller;
 
+import com.interior.dto.CutlistPreview;
+import com.interior.dto.CutlistPreviewRequest;
+import com.interior.dto.SweepRequest;
+import com.interior.dto.TemplateCacheStats;
+import com.interior.dto.TemplateImportResult;
+import com.interior.dto.TemplateCompileStats;
 import com.interior.model.*;
 import com.interior.repository.*;
+import com.interior.service.CutlistPreviewService;
+import com.interior.service.ExpressionEvaluatorService;
+import com.interior.service.ProductTemplateService;
+import com.interior.service.TemplateBundleService;
+import com.interior.service.TemplateEngineService;
+import com.interior.service.TemplateSweepService;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -17,18 +36,33 @@ public class ProductTemplateController {
   private final TemplateDerivedVarRepository derivedVarRepository;
   private final TemplatePartRuleRepository partRuleRepository;
   private final TemplateValidationRuleRepository validationRuleRepository;
+  private final TemplateEngineService templateEngineService;
+  private final ProductTemplateService templateService;
+  private final CutlistPreviewService previewService;
+  private final TemplateSweepService sweepService;
+  private final TemplateBundleService bundleService;
 
   public ProductTemplateController(
       ProductTemplateRepository templateRepository,
       TemplateParamRepository paramRepository,
       TemplateDerivedVarRepository derivedVarRepository,
       TemplatePartRuleRepository partRuleRepository,
-      TemplateValidationRuleRepository validationRuleRepository) {
+      TemplateValidationRuleRepository validationRuleRepository,
+      TemplateEngineService templateEngineService,
+      ProductTemplateService templateService,
+      CutlistPreviewService previewService,
+      TemplateSweepService sweepService,
+      TemplateBundleService bundleService) {
     this.templateRepository = templateRepository;
     this.paramRepository = paramRepository;
     this.derivedVarRepository = derivedVarRepository;
     this.partRuleRepository = partRuleRepository;
     this.validationRuleRepository = validationRuleRepository;
+    this.templateEngineService = templateEngineService;
+    this.templateService = templateService;
+    this.previewService = previewService;
+    this.sweepService = sweepService;
+    this.bundleService = bundleService;
   }
 
   @GetMapping
@@ -53,9 +87,80 @@ public class ProductTemplateController {
     return paramRepository.findByTemplate_IdOrderByParamName(id);
   }
 
+  // Bulk import: one template bundle (template + params, derived vars, part and validation rules) per NDJSON line,
+  // or per YAML document when sent as application/yaml (or application/x-yaml, text/yaml)
+  @PostMapping("/import")
+  public TemplateImportResult importBundle(@RequestHeader(value = "Content-Type", required = false) String contentType,
+                                           InputStream body) throws IOException {
+    return isYaml(contentType) ? bundleService.importYamlBundle(body) : bundleService.importBundle(body);
+  }
+
+  private static boolean isYaml(String contentType) {
+    if (contentType == null) return false;
+    String subtype = MediaType.parseMediaType(contentType).getSubtype().toLowerCase();
+    return subtype.equals("yaml") || subtype.equals("x-yaml");
+  }
+
+  // Bulk export in the import format, streamed
+  @GetMapping("/export")
+  public ResponseEntity<StreamingResponseBody> exportBundle() {
+    return ResponseEntity.ok().contentType(MediaType.parseMediaType("application/x-ndjson"))
+        .body(bundleService::exportBundle);
+  }
+
+  // Compiled-template and cutlist-result cache sizes with hit/miss counters
+  @GetMapping("/cache-stats")
+  public TemplateCacheStats getCacheStats() {
+    return templateEngineService.getCacheStats();
+  }
+
+  // Optimizer report: operations per item before/after constant folding and subexpression sharing
+  @GetMapping("/{id}/compile-stats")
+  public TemplateCompileStats getCompileStats(@PathVariable Long id) {
+    ProductTemplate template = templateRepository.findById(id).orElseThrow();
+    return templateEngineService.getCompiledTemplate(template).getStats();
+  }
+
+  // In-memory cutlist for unsaved dimensions/params; nothing is persisted
+  @PostMapping("/{id}/preview")
+  public CutlistPreview preview(@PathVariable Long id, @RequestBody CutlistPreviewRequest request) {
+    try {
+      return previewService.previewTemplate(id, request);
+    } catch (TemplateEngineService.TemplateEngineException | ExpressionEvaluatorService.ExpressionException e) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+    }
+  }
+
+  // Evaluate the template over a W/H/D/param grid; rows are streamed as NDJSON (default) or CSV
+  @PostMapping("/{id}/sweep")
+  public ResponseEntity<StreamingResponseBody> sweep(@PathVariable Long id,
+                                                     @RequestParam(defaultValue = "ndjson") String format,
+                                                     @RequestBody SweepRequest request) {
+    TemplateSweepService.SweepPlan plan;
+    try {
+      plan = sweepService.plan(id, request);
+    } catch (IllegalArgumentException | TemplateEngineService.TemplateEngineException | ExpressionEvaluatorService.ExpressionException e) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+    }
+    MediaType type = "csv".equalsIgnoreCase(format) ? MediaType.parseMediaType("text/csv") : MediaType.parseMediaType("application/x-ndjson");
+    return ResponseEntity.ok().contentType(type).body(out -> sweepService.write(plan, format, out));
+  }
+
+  // Replace derived vars; rejected with 400 if an expression is invalid or the vars form a cycle
+  @PutMapping("/{id}/derived-vars")
+  public List<TemplateDerivedVar> replaceDerivedVars(@PathVariable Long id, @RequestBody List<TemplateDerivedVar> derivedVars) {
+    try {
+      return templateService.replaceDerivedVars(id, derivedVars);
+    } catch (TemplateEngineService.TemplateEngineException | ExpressionEvaluatorService.ExpressionException e) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+    }
+  }
+
   @PostMapping
   public ProductTemplate createTemplate(@RequestBody ProductTemplate template) {
-    return templateRepository.save(template);
+    ProductTemplate saved = templateRepository.save(template);
+    templateEngineService.evictTemplate(saved.getId());
+    return saved;
   }
 }
 
@@ -1,21 +1,53 @@
 package com.interior.controller;
 
+import com.interior.dto.CutlistJobStatus;
 import com.interior.dto.MaterialSummary;
+import com.interior.dto.QuoteDerived;
+import com.interior.dto.QuoteDiff;
+import com.interior.dto.QuoteItemLine;
 import com.interior.dto.QuoteTotal;
 import com.interior.model.CutlistItem;
 import com.interior.model.QuoteItem;
 import com.interior.model.Quotation;
+import com.interior.service.CutlistJobService;
+import com.interior.service.QuotationDiffService;
 import com.interior.service.QuotationService;
+import com.interior.service.QuotationSnapshotService;
+import com.interior.service.QuoteRecomputeService;
+import com.interior.service.TemplateEngineService;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
 
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.RejectedExecutionException;
 
 @RestController
 @RequestMapping("/api/quotes")
 public class QuotationController {
 
   private final QuotationService service;
-  public QuotationController(QuotationService service) { this.service = service; }
+  private final QuotationDiffService diffService;
+  private final CutlistJobService jobService;
+  private final QuoteRecomputeService recomputeService;
+  private final QuotationSnapshotService snapshotService;
+
+  public QuotationController(QuotationService service,
+                             QuotationDiffService diffService,
+                             CutlistJobService jobService,
+                             QuoteRecomputeService recomputeService,
+                             QuotationSnapshotService snapshotService) {
+    this.service = service;
+    this.diffService = diffService;
+    this.jobService = jobService;
+    this.recomputeService = recomputeService;
+    this.snapshotService = snapshotService;
+  }
 
   // Step 4 start: load/create draft for project
   @PostMapping("/draft")
@@ -29,6 +61,16 @@ public class QuotationController {
 
   @GetMapping("/{quoteId}") public Quotation get(@PathVariable Long quoteId) { return service.get(quoteId); }
 
+  // What changed between two versions of a project's quotation: lines, total and cutlist
+  @GetMapping("/diff")
+  public QuoteDiff diff(@RequestParam Long fromQuoteId, @RequestParam Long toQuoteId) {
+    try {
+      return diffService.diff(fromQuoteId, toQuoteId);
+    } catch (IllegalArgumentException e) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+    }
+  }
+
   // Items (Step 2/3)
   @GetMapping("/{quoteId}/items")
   public List<QuoteItem> listItems(@PathVariable Long quoteId) { return service.listItems(quoteId); }
@@ -38,28 +80,137 @@ public class QuotationController {
                            @RequestParam Long areaId,
                            @RequestParam Long productId,
                            @RequestBody QuoteItem payload) {
-    return service.addItem(quoteId, areaId, productId, payload);
+    try {
+      return service.addItem(quoteId, areaId, productId, payload);
+    } catch (TemplateEngineService.TemplateEngineException e) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+    } catch (OptimisticLockingFailureException e) {
+      throw new ResponseStatusException(HttpStatus.CONFLICT, "Quotation is being modified concurrently, retry", e);
+    }
+  }
+
+  // Batch add (e.g. a pasted BOQ): one transaction, batched inserts, total updated once
+  @PostMapping("/{quoteId}/items/batch")
+  public List<QuoteItem> addItems(@PathVariable Long quoteId, @RequestBody List<QuoteItemLine> lines) {
+    try {
+      return service.addItems(quoteId, lines);
+    } catch (IllegalArgumentException e) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+    } catch (OptimisticLockingFailureException e) {
+      throw new ResponseStatusException(HttpStatus.CONFLICT, "Quotation is being modified concurrently, retry", e);
+    }
   }
 
+  // Edits within a quotation version; an item inherited from an earlier version is replaced in this version only
+  @PutMapping("/{quoteId}/items/{itemId}")
+  public QuoteItem updateItem(@PathVariable Long quoteId, @PathVariable Long itemId, @RequestBody QuoteItem payload) {
+    try {
+      return service.updateItem(quoteId, itemId, payload);
+    } catch (TemplateEngineService.TemplateEngineException e) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+    } catch (OptimisticLockingFailureException e) {
+      throw new ResponseStatusException(HttpStatus.CONFLICT, "Quotation is being modified concurrently, retry", e);
+    }
+  }
+
+  @DeleteMapping("/{quoteId}/items/{itemId}")
+  public void deleteItem(@PathVariable Long quoteId, @PathVariable Long itemId) {
+    try {
+      service.deleteItem(quoteId, itemId);
+    } catch (OptimisticLockingFailureException e) {
+      throw new ResponseStatusException(HttpStatus.CONFLICT, "Quotation is being modified concurrently, retry", e);
+    }
+  }
+
+  // Item-only forms act on the version that owns the item
   @PutMapping("/items/{itemId}")
   public QuoteItem updateItem(@PathVariable Long itemId, @RequestBody QuoteItem payload) {
-    return service.updateItem(itemId, payload);
+    try {
+      return service.updateItem(itemId, payload);
+    } catch (TemplateEngineService.TemplateEngineException e) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+    } catch (OptimisticLockingFailureException e) {
+      throw new ResponseStatusException(HttpStatus.CONFLICT, "Quotation is being modified concurrently, retry", e);
+    }
   }
 
-  @DeleteMapping("/items/{itemId}") public void deleteItem(@PathVariable Long itemId) { service.deleteItem(itemId); }
+  @DeleteMapping("/items/{itemId}")
+  public void deleteItem(@PathVariable Long itemId) {
+    try {
+      service.deleteItem(itemId);
+    } catch (OptimisticLockingFailureException e) {
+      throw new ResponseStatusException(HttpStatus.CONFLICT, "Quotation is being modified concurrently, retry", e);
+    }
+  }
 
-  // Totals
+  // Totals (maintained incrementally; recalc re-sums and reports drift)
   @PostMapping("/{quoteId}/recalc") public QuoteTotal recalc(@PathVariable Long quoteId) { return service.recalcTotal(quoteId); }
-  @PostMapping("/{quoteId}/submit") public Quotation submit(@PathVariable Long quoteId) { return service.submit(quoteId); }
-  @PostMapping("/duplicateLatest") public Quotation duplicateLatest(@RequestParam Long projectId) { return service.duplicateLatest(projectId); }
+  @PostMapping("/{quoteId}/submit")
+  public Quotation submit(@PathVariable Long quoteId) {
+    try {
+      return service.submit(quoteId);
+    } catch (TemplateEngineService.TemplateEngineException e) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+    } catch (OptimisticLockingFailureException e) {
+      throw new ResponseStatusException(HttpStatus.CONFLICT, "Quotation is being modified concurrently, retry", e);
+    }
+  }
+
+  // Export of a submitted quotation: the frozen snapshot (items, cutlist, material summary, total) as stored
+  @GetMapping("/{quoteId}/snapshot")
+  public ResponseEntity<byte[]> snapshot(@PathVariable Long quoteId) {
+    byte[] document = snapshotService.findCompressed(quoteId);
+    if (document == null) {
+      throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Quotation " + quoteId + " has no snapshot; submit it first");
+    }
+    return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON)
+        .header(HttpHeaders.CONTENT_ENCODING, "gzip")
+        .body(document);
+  }
+  @PostMapping("/duplicateLatest")
+  public Quotation duplicateLatest(@RequestParam Long projectId, @RequestParam(defaultValue = "false") boolean withCutlist) {
+    return service.duplicateLatest(projectId, withCutlist);
+  }
 
   // Step 5: cutlist
   @PostMapping("/{quoteId}/cutlist/generate")
   public List<CutlistItem> generateCutlist(@PathVariable Long quoteId) { return service.generateCutlist(quoteId); }
 
+  // Background generation for large quotes: submit, then poll the job until it finishes
+  @PostMapping("/{quoteId}/cutlist/jobs")
+  public ResponseEntity<CutlistJobStatus> submitCutlistJob(@PathVariable Long quoteId) {
+    try {
+      return ResponseEntity.accepted().body(jobService.submit(quoteId));
+    } catch (RejectedExecutionException e) {
+      throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Too many cutlist jobs queued, retry later", e);
+    }
+  }
+
+  @GetMapping("/cutlist/jobs/{jobId}")
+  public CutlistJobStatus getCutlistJob(@PathVariable String jobId) {
+    try {
+      return jobService.get(jobId);
+    } catch (NoSuchElementException e) {
+      throw new ResponseStatusException(HttpStatus.NOT_FOUND, e.getMessage(), e);
+    }
+  }
+
+  @DeleteMapping("/cutlist/jobs/{jobId}")
+  public CutlistJobStatus cancelCutlistJob(@PathVariable String jobId) {
+    try {
+      return jobService.cancel(jobId);
+    } catch (NoSuchElementException e) {
+      throw new ResponseStatusException(HttpStatus.NOT_FOUND, e.getMessage(), e);
+    }
+  }
+
   @GetMapping("/{quoteId}/cutlist")
   public List<CutlistItem> listCutlist(@PathVariable Long quoteId) { return service.listCutlist(quoteId); }
 
+  // Total, cutlist and material summary as of the last background recompute after item edits
+  @GetMapping("/{quoteId}/derived")
+  public QuoteDerived derived(@PathVariable Long quoteId) { return recomputeService.get(quoteId); }
+
   // Step 6: material usage summary
   @GetMapping("/{quoteId}/material-summary")
   public MaterialSummary materialSummary(@PathVariable Long quoteId) { return service.materialSummary(quoteId); }
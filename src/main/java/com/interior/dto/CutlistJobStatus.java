@@ -0,0 +1,19 @@
+package com.interior.dto;
+
+import lombok.Data;
+
+import java.time.Instant;
+
+@Data
+public class CutlistJobStatus {
+  private String jobId;
+  private Long quoteId;
+  private String status;        // QUEUED / RUNNING / SUCCEEDED / FAILED / CANCELLED
+  private int processed;        // quote items done, unchanged items included
+  private int total;            // quote items in the quotation (0 until the job starts)
+  private Integer cutlistRows;  // rows in the saved cutlist, once SUCCEEDED
+  private String error;
+  private Instant submittedAt;
+  private Instant startedAt;
+  private Instant finishedAt;
+}
@@ -0,0 +1,16 @@
+package com.interior.dto;
+
+import com.interior.service.GeneratedPart;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class CutlistPreview {
+  private Long productId;
+  private Long templateId;
+  private Integer templateVersion;
+  private List<GeneratedPart> parts;
+  private MaterialSummary sheets;
+  private Double price;  // null when previewing a bare template
+}
@@ -0,0 +1,16 @@
+package com.interior.dto;
+
+import lombok.Data;
+
+import java.util.Map;
+
+@Data
+public class CutlistPreviewRequest {
+  private Integer quantity = 1;
+  // Dimensions (mm)
+  private Double width;
+  private Double height;
+  private Double depth;
+  // Template parameter overrides, e.g. {"SHELF_COUNT": 3, "DOOR_COUNT": 2}
+  private Map<String, Double> templateParams;
+}
@@ -0,0 +1,27 @@
+package com.interior.dto;
+
+import com.interior.model.Money;
+import lombok.Data;
+
+import java.time.Instant;
+
+// Data derived from a quotation's items by the last background recompute (see QuoteRecomputeService)
+@Data
+public class QuoteDerived {
+  private Long quoteId;
+  private boolean pending;          // item changes not yet reflected below
+  private Instant computedAt;       // null until the first recompute
+  private Long totalPricePaise;
+  private Long totalDriftPaise;
+  private Integer cutlistRows;
+  private MaterialSummary materialSummary;
+  private String error;             // message of the last failed recompute
+
+  public Double getTotalPrice() {
+    return totalPricePaise == null ? null : Money.toRupees(totalPricePaise);
+  }
+
+  public Double getTotalDrift() {
+    return totalDriftPaise == null ? null : Money.toRupees(totalDriftPaise);
+  }
+}
@@ -0,0 +1,73 @@
+package com.interior.dto;
+
+import com.interior.model.Money;
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+public class QuoteDiff {
+  private Long fromQuoteId;
+  private Long toQuoteId;
+  private Long fromVersionNo;
+  private Long toVersionNo;
+
+  private List<Line> added = new ArrayList<>();
+  private List<Line> removed = new ArrayList<>();
+  private List<Line> modified = new ArrayList<>();
+  private int unchangedCount;
+
+  private long totalDeltaPaise;       // to.totalPrice - from.totalPrice
+  private List<CutlistDelta> cutlist = new ArrayList<>();
+  private int sheetCountDelta;        // 8x4 sheets, see QuotationService.estimateSheets
+
+  public double getTotalDelta() {
+    return Money.toRupees(totalDeltaPaise);
+  }
+
+  // Items are matched by area, product and dimensions; from/to fields are null on the side the line is missing from
+  @Data
+  public static class Line {
+    private Long areaId;
+    private String areaName;
+    private Long productId;
+    private String productName;
+    private Double width;
+    private Double height;
+    private Double depth;
+    private Long fromItemId;
+    private Long toItemId;
+    private Integer fromQuantity;
+    private Integer toQuantity;
+    private Long fromPricePaise;
+    private Long toPricePaise;
+    private long priceDeltaPaise;
+    private List<String> changes = new ArrayList<>();  // modified lines: quantity, templateParams, notes, price
+
+    public Double getFromPrice() {
+      return fromPricePaise == null ? null : Money.toRupees(fromPricePaise);
+    }
+
+    public Double getToPrice() {
+      return toPricePaise == null ? null : Money.toRupees(toPricePaise);
+    }
+
+    public double getPriceDelta() {
+      return Money.toRupees(priceDeltaPaise);
+    }
+  }
+
+  // Generated cutlist per material and thickness
+  @Data
+  public static class CutlistDelta {
+    private String materialType;
+    private Double thickness;
+    private long fromParts;
+    private long toParts;
+    private double fromAreaMm2;
+    private double toAreaMm2;
+    private long partsDelta;
+    private double areaDeltaMm2;
+  }
+}
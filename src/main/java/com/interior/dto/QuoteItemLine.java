@@ -0,0 +1,17 @@
+package com.interior.dto;
+
+import lombok.Data;
+
+/** One line of a batch item add (e.g. a pasted BOQ row). */
+@Data
+public class QuoteItemLine {
+  private Long areaId;
+  private Long productId;
+  private Integer quantity;
+  // Dimensions (mm)
+  private Double height;
+  private Double width;
+  private Double depth;
+  private String notes;
+  private String templateParamsJson;  // same format as QuoteItem.templateParamsJson
+}
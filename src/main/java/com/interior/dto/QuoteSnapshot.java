@@ -0,0 +1,36 @@
+package com.interior.dto;
+
+import com.interior.model.QuoteItem;
+import com.interior.model.Quotation;
+import lombok.Data;
+
+import java.time.Instant;
+import java.util.List;
+
+// Document stored in QuotationSnapshot when a quotation is submitted
+@Data
+public class QuoteSnapshot {
+  private Quotation quotation;
+  private List<QuoteItem> items;
+  private List<Part> cutlist;       // cutlist rows, referencing items by id
+  private MaterialSummary materialSummary;
+  private Instant frozenAt;
+
+  @Data
+  public static class Part {
+    private Long id;
+    private Instant createdAt;
+    private Instant updatedAt;
+    private Long quoteItemId;
+    private String partName;
+    private String partType;
+    private Double cutHeight;
+    private Double cutWidth;
+    private Double thickness;
+    private Integer quantity;
+    private String materialType;
+    private String edgeBanding;
+    private String grainDirection;
+    private String sourceFingerprint;
+  }
+}
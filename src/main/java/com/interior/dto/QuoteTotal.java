@@ -1,9 +1,19 @@
 package com.interior.dto;
 
+import com.interior.model.Money;
 import lombok.Data;
 
 @Data
 public class QuoteTotal {
   private Long quoteId;
-  private Double totalPrice;
+  private long totalPricePaise;
+  private long driftPaise;  // recalculated total minus the stored total it replaced
+
+  public double getTotalPrice() {
+    return Money.toRupees(totalPricePaise);
+  }
+
+  public double getDrift() {
+    return Money.toRupees(driftPaise);
+  }
 }
@@ -0,0 +1,30 @@
+package com.interior.dto;
+
+import com.interior.model.Money;
+import lombok.Data;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+@Data
+public class RepricingJobStatus {
+  private String jobId;
+  private Set<Long> productIds;
+  private String status;              // QUEUED / RUNNING / SUCCEEDED / FAILED / CANCELLED
+  private long scannedItems;          // draft items of these products read so far
+  private long repricedItems;         // of those, items whose price changed
+  private long totalDeltaPaise;       // sum of item price changes
+  private long failedItems;           // items that could not be priced; left at their old price
+  private List<String> failures = new ArrayList<>();  // "item 12: ...", first few only
+  private List<QuoteTotal> quotations = new ArrayList<>();  // updated totals (drift = change), once finished
+  private String error;
+  private Instant submittedAt;
+  private Instant startedAt;
+  private Instant finishedAt;
+
+  public double getTotalDelta() {
+    return Money.toRupees(totalDeltaPaise);
+  }
+}
@@ -0,0 +1,24 @@
+package com.interior.dto;
+
+import lombok.Data;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Grid for a template sweep. {@code ranges} is keyed by W, H, D or a template param name;
+ * W, H and D are required, params without a range keep their default.
+ */
+@Data
+public class SweepRequest {
+  private Long productId;  // optional; prices each point with this product's pricing model
+  private Map<String, Range> ranges = new LinkedHashMap<>();
+
+  /** Inclusive range; a single value is {@code from == to}. */
+  @Data
+  public static class Range {
+    private double from;
+    private double to;
+    private double step = 1;
+  }
+}
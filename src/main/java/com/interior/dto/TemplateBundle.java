@@ -0,0 +1,30 @@
+package com.interior.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.interior.model.*;
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One line of a template bundle file: a template with all of its rule rows.
+ * Ids, timestamps and back-references are left out; templates are matched by code.
+ */
+@Data
+public class TemplateBundle {
+  @JsonIgnoreProperties({"id", "createdAt", "updatedAt", "version"})
+  private ProductTemplate template;
+
+  @JsonIgnoreProperties({"id", "createdAt", "updatedAt", "template"})
+  private List<TemplateParam> params = new ArrayList<>();
+
+  @JsonIgnoreProperties({"id", "createdAt", "updatedAt", "template"})
+  private List<TemplateDerivedVar> derivedVars = new ArrayList<>();
+
+  @JsonIgnoreProperties({"id", "createdAt", "updatedAt", "template"})
+  private List<TemplatePartRule> partRules = new ArrayList<>();
+
+  @JsonIgnoreProperties({"id", "createdAt", "updatedAt", "template"})
+  private List<TemplateValidationRule> validationRules = new ArrayList<>();
+}
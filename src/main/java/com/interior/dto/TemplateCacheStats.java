@@ -0,0 +1,13 @@
+package com.interior.dto;
+
+import lombok.Data;
+
+@Data
+public class TemplateCacheStats {
+  private int compiledTemplates;
+  private long compiledTemplateHits;
+  private long compiledTemplateMisses;
+  private int cutlistResults;
+  private long cutlistResultHits;
+  private long cutlistResultMisses;
+}
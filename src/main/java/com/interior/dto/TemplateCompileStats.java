@@ -0,0 +1,23 @@
+package com.interior.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * Effect of the template optimizer, measured in operations evaluated per quote item
+ * when every rule is active, plus the dependency order of the derived vars.
+ */
+@Data
+public class TemplateCompileStats {
+  private Long templateId;
+  private String code;
+  private Integer version;
+  private int expressions;
+  private int operationsBefore;
+  private int operationsAfter;
+  private int constantsFolded;
+  private int sharedSubexpressions;
+  private int evaluationsSavedPerItem;
+  private List<String> derivedVarOrder;
+}
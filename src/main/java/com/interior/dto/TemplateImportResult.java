@@ -0,0 +1,14 @@
+package com.interior.dto;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+public class TemplateImportResult {
+  private int created;
+  private int updated;
+  private int rejected;
+  private List<String> errors = new ArrayList<>();  // "line 12 (KITCHEN_TALL): ..."
+}
@@ -1,5 +1,6 @@
 package com.interior.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.Getter;
 import lombok.Setter;
@@ -29,4 +30,9 @@ public class CutlistItem extends BaseEntity {
   private String materialType;  // "18mm Plywood", "6mm Back Panel", etc.
   private String edgeBanding;   // "ALL", "FRONT_ONLY", "NONE", etc.
   private String grainDirection;  // "VERTICAL", "HORIZONTAL", "ANY"
+
+  // Fingerprint of the quote item inputs this row was generated from (see TemplateEngineService.fingerprint)
+  @JsonIgnore
+  @Column(length = 64)
+  private String sourceFingerprint;
 }
@@ -0,0 +1,25 @@
+package com.interior.model;
+
+/**
+ * Money amounts are stored as whole paise in a {@code long}; sums and differences are exact.
+ * Rupee values are only produced for display and API compatibility.
+ */
+public final class Money {
+
+  public static final long PAISE_PER_RUPEE = 100;
+
+  private Money() {
+  }
+
+  public static double toRupees(long paise) {
+    return paise / (double) PAISE_PER_RUPEE;
+  }
+
+  /**
+   * Round a rupee amount half-up to whole paise. The value is first snapped to a micro-rupee so
+   * binary noise (1.005 computed as 1.00499999...) does not decide the rounding.
+   */
+  public static long ofRupees(double rupees) {
+    return Math.round(Math.rint(rupees * 1_000_000) / 10_000);
+  }
+}
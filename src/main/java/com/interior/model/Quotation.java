@@ -1,10 +1,15 @@
 package com.interior.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import jakarta.persistence.*;
 import lombok.Getter;
 import lombok.Setter;
 
+import java.util.HashSet;
+import java.util.Set;
+
 @Getter @Setter
 @Entity
 @JsonIgnoreProperties({"hibernateLazyInitializer", "handler"})
@@ -18,6 +23,28 @@ public class Quotation extends BaseEntity {
   private String status = "DRAFT";      // DRAFT / SUBMITTED
 
   private String currency = "INR";
-  private Double totalPrice = 0.0;
+  private long totalPricePaise;         // maintained by item-price deltas; see QuotationService.recalcTotal
   private String notes;
+
+  // Version this one was revised from. A revision shares its parent's items and stores only
+  // overriding items (QuoteItem.sourceItemId) and removed item ids; see QuotationService.listItems
+  private Long parentId;
+
+  // Ids of inherited items removed in this version
+  @ElementCollection
+  @CollectionTable(name = "quotation_removed_item", joinColumns = @JoinColumn(name = "quotation_id"))
+  @Column(name = "item_id", nullable = false)
+  @JsonIgnore
+  private Set<Long> removedItemIds = new HashSet<>();
+
+  // Optimistic lock: concurrent edits of the same quotation retry instead of losing a total update
+  @Version
+  @JsonIgnore
+  private Long lockVersion;
+
+  // Rupee view of totalPricePaise for API clients
+  @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+  public double getTotalPrice() {
+    return Money.toRupees(totalPricePaise);
+  }
 }
@@ -0,0 +1,24 @@
+package com.interior.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+
+// Frozen, denormalized copy of a submitted quotation: gzip-compressed JSON of a QuoteSnapshot
+@Getter @Setter
+@Entity
+public class QuotationSnapshot extends BaseEntity {
+
+  @Column(nullable = false, unique = true)
+  private Long quotationId;
+
+  private Long versionNo;
+
+  private Integer itemCount;
+  private Integer cutlistRows;
+  private Long totalPricePaise;
+  private Integer jsonBytes;      // size before compression
+
+  @Column(nullable = false, columnDefinition = "bytea")
+  private byte[] document;
+}
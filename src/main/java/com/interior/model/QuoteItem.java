@@ -1,13 +1,25 @@
 package com.interior.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.Positive;
 import lombok.Getter;
 import lombok.Setter;
+import org.hibernate.annotations.Fetch;
+import org.hibernate.annotations.FetchMode;
+
+import java.io.UncheckedIOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
 
 @Getter @Setter
 @Entity
+@Table(indexes = @Index(name = "idx_quote_item_source", columnList = "source_item_id"))
 @JsonIgnoreProperties({"hibernateLazyInitializer", "handler"})
 public class QuoteItem extends BaseEntity {
 
@@ -31,12 +43,49 @@ public class QuoteItem extends BaseEntity {
   private Double width;
   private Double depth;
 
-  // Calculated
-  private Double computedPrice = 0.0;
+  // Calculated, in paise (see PricingService)
+  private long computedPricePaise;
+  private Long rateCardVersion;  // rate card the price was computed with
 
   private String notes;
 
-  // Template parameter overrides (JSON: {"SHELF_COUNT": 3, "DOOR_COUNT": 2})
-  @Column(columnDefinition = "TEXT")
+  // Inherited item of an earlier version that this one replaces (null for items added directly)
+  @JsonIgnore
+  private Long sourceItemId;
+
+  // Template parameter overrides, validated against TemplateParam min/max when the item is written
+  @ElementCollection(fetch = FetchType.EAGER)
+  @Fetch(FetchMode.SUBSELECT)
+  @CollectionTable(name = "quote_item_param", joinColumns = @JoinColumn(name = "quote_item_id"))
+  @MapKeyColumn(name = "param_name")
+  @Column(name = "param_value", nullable = false)
+  @JsonIgnore
+  private Map<String, Double> templateParams = new HashMap<>();
+
+  // API form of templateParams (JSON: {"SHELF_COUNT": 3, "DOOR_COUNT": 2}); parsed by QuotationService on write
+  @Transient
   private String templateParamsJson;
+
+  private static final ObjectMapper JSON = new ObjectMapper();
+
+  // Rupee view of computedPricePaise for API clients
+  @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+  public double getComputedPrice() {
+    return Money.toRupees(computedPricePaise);
+  }
+
+  public String getTemplateParamsJson() {
+    if (templateParamsJson != null || templateParams == null || templateParams.isEmpty()) return templateParamsJson;
+    // Whole values as integers ({"SHELF_COUNT": 3}), keys sorted so equal params give equal JSON
+    Map<String, Number> out = new TreeMap<>();
+    for (Map.Entry<String, Double> e : templateParams.entrySet()) {
+      double v = e.getValue();
+      out.put(e.getKey(), v == Math.rint(v) && Math.abs(v) < 1e15 ? (Number) (long) v : v);
+    }
+    try {
+      return JSON.writeValueAsString(out);
+    } catch (JsonProcessingException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
 }
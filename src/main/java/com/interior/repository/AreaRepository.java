@@ -2,8 +2,15 @@ package com.interior.repository;
 
 import com.interior.model.Area;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
 import java.util.List;
 
 public interface AreaRepository extends JpaRepository<Area, Long> {
   List<Area> findByProject_Id(Long projectId);
+
+  @Query("select a from Area a join fetch a.project p join fetch p.client where a.id in :ids")
+  List<Area> findAllWithProjectById(@Param("ids") Collection<Long> ids);
 }
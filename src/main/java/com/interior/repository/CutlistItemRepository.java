@@ -2,9 +2,47 @@ package com.interior.repository;
 
 import com.interior.model.CutlistItem;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import java.util.Collection;
 import java.util.List;
 
 public interface CutlistItemRepository extends JpaRepository<CutlistItem, Long> {
   List<CutlistItem> findByQuotation_Id(Long quoteId);
+
+  interface MaterialTotal {
+    String getMaterialType();
+    Double getThickness();
+    Long getParts();
+    Double getAreaMm2();
+  }
+
+  // Part count and area per material and thickness, aggregated in the database
+  @Query("select c.materialType as materialType, c.thickness as thickness, sum(c.quantity) as parts,"
+      + " sum(c.cutWidth * c.cutHeight * c.quantity) as areaMm2"
+      + " from CutlistItem c where c.quotation.id = :quoteId group by c.materialType, c.thickness")
+  List<MaterialTotal> sumByMaterial(@Param("quoteId") Long quoteId);
   void deleteByQuotation_Id(Long quoteId);
+
+  // Single DELETE statement, without loading the rows first
+  @Modifying
+  @Query("delete from CutlistItem c where c.quotation.id = :quoteId")
+  int deleteAllByQuotationId(@Param("quoteId") Long quoteId);
+
+  // Copy one version's cutlist to a revision of it; the revision shares the same items, so fingerprints stay valid
+  @Modifying
+  @Query(nativeQuery = true, value = "insert into cutlist_item"
+      + " (id, created_at, updated_at, quotation_id, quote_item_id, part_name, part_type, cut_height, cut_width,"
+      + " thickness, quantity, material_type, edge_banding, grain_direction, source_fingerprint)"
+      + " select nextval('cutlist_item_seq'), current_timestamp, current_timestamp, :toQuoteId, c.quote_item_id,"
+      + " c.part_name, c.part_type, c.cut_height, c.cut_width, c.thickness, c.quantity, c.material_type,"
+      + " c.edge_banding, c.grain_direction, c.source_fingerprint"
+      + " from cutlist_item c where c.quotation_id = :fromQuoteId")
+  int copyForQuotation(@Param("fromQuoteId") Long fromQuoteId, @Param("toQuoteId") Long toQuoteId);
+
+  // Scoped to one quotation: items are shared between versions, their cutlist rows are not
+  @Modifying
+  @Query("delete from CutlistItem c where c.quotation.id = :quoteId and c.quoteItem.id in :quoteItemIds")
+  int deleteAllByQuoteItemIds(@Param("quoteId") Long quoteId, @Param("quoteItemIds") Collection<Long> quoteItemIds);
 }
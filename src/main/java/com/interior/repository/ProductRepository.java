@@ -2,8 +2,15 @@ package com.interior.repository;
 
 import com.interior.model.Product;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
 import java.util.List;
 
 public interface ProductRepository extends JpaRepository<Product, Long> {
   List<Product> findByCategory(String category);
+
+  @Query("select p from Product p left join fetch p.template where p.id in :ids")
+  List<Product> findAllWithTemplateById(@Param("ids") Collection<Long> ids);
 }
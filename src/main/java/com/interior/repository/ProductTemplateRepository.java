@@ -1,13 +1,18 @@
 package com.interior.repository;
 
 import com.interior.model.ProductTemplate;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 public interface ProductTemplateRepository extends JpaRepository<ProductTemplate, Long> {
   Optional<ProductTemplate> findByCode(String code);
   List<ProductTemplate> findByCategory(String category);
+  List<ProductTemplate> findByCodeIn(Collection<String> codes);
+  // Keyset page for streaming export
+  List<ProductTemplate> findByIdGreaterThanOrderById(Long id, Pageable page);
 }
 
@@ -1,11 +1,40 @@
 package com.interior.repository;
 
 import com.interior.model.Quotation;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 public interface QuotationRepository extends JpaRepository<Quotation, Long> {
   List<Quotation> findByProject_IdOrderByVersionNoDesc(Long projectId);
-  Optional<Quotation> findFirstByProject_IdAndStatus(Long projectId, String status);
+  Optional<Quotation> findFirstByProject_IdAndStatusOrderByVersionNoDesc(Long projectId, String status);
+  boolean existsByParentId(Long parentId);
+
+  @Lock(LockModeType.PESSIMISTIC_WRITE)
+  @Query("select q from Quotation q where q.id = :quoteId")
+  Optional<Quotation> lockById(@Param("quoteId") Long quoteId);
+
+  // The quotation and all versions it was revised from, walking parent_id in one query
+  @Query(nativeQuery = true, value = "with recursive lineage(id, parent_id) as ("
+      + " select id, parent_id from quotation where id = :quoteId"
+      + " union all select q.id, q.parent_id from quotation q join lineage l on q.id = l.parent_id)"
+      + " select id from lineage")
+  List<Long> findLineageIds(@Param("quoteId") Long quoteId);
+
+  // Drafts revised directly from a submitted version; drafts revised from them inherit their items
+  @Query("select q.id from Quotation q where q.status = 'DRAFT'"
+      + " and q.parentId in (select p.id from Quotation p where p.status <> 'DRAFT') order by q.id")
+  List<Long> findDraftIdsRevisedFromFrozen();
+
+  // Draft versions revised, directly or not, from any of the given quotations; they inherit their items
+  @Query(nativeQuery = true, value = "with recursive descendants(id) as ("
+      + " select id from quotation where parent_id in (:quoteIds)"
+      + " union all select q.id from quotation q join descendants d on q.parent_id = d.id)"
+      + " select d.id from descendants d join quotation q on q.id = d.id where q.status = 'DRAFT'")
+  List<Long> findDraftDescendantIds(@Param("quoteIds") Collection<Long> quoteIds);
 }
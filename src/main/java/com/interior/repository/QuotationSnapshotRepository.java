@@ -0,0 +1,9 @@
+package com.interior.repository;
+
+import com.interior.model.QuotationSnapshot;
+import org.springframework.data.jpa.repository.JpaRepository;
+import java.util.Optional;
+
+public interface QuotationSnapshotRepository extends JpaRepository<QuotationSnapshot, Long> {
+  Optional<QuotationSnapshot> findByQuotationId(Long quotationId);
+}
@@ -1,10 +1,47 @@
 package com.interior.repository;
 
 import com.interior.model.QuoteItem;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import java.util.Collection;
 import java.util.List;
 
 public interface QuoteItemRepository extends JpaRepository<QuoteItem, Long> {
   List<QuoteItem> findByQuotation_Id(Long quoteId);
   List<QuoteItem> findByQuotation_IdAndArea_Id(Long quoteId, Long areaId);
+
+  // Effective items of a version, given its lineage (QuotationRepository.findLineageIds): items of any
+  // version in the lineage that no version in it has replaced (by sourceItemId) or removed
+  String EFFECTIVE = " i.quotation.id in :lineage"
+      + " and not exists (select 1 from QuoteItem o where o.quotation.id in :lineage and o.sourceItemId = i.id)"
+      + " and not exists (select 1 from Quotation r join r.removedItemIds t where r.id in :lineage and t = i.id)";
+
+  @Query("select i from QuoteItem i where" + EFFECTIVE + " order by i.id")
+  List<QuoteItem> findEffective(@Param("lineage") Collection<Long> lineage);
+
+  @Query("select i.id from QuoteItem i where" + EFFECTIVE)
+  List<Long> findEffectiveIds(@Param("lineage") Collection<Long> lineage);
+
+  // Page (by id) of a version's effective items of these products that belong to a submitted version
+  @Query("select i.id from QuoteItem i where" + EFFECTIVE + " and i.quotation.status <> 'DRAFT'"
+      + " and i.product.id in :productIds and i.id > :afterId order by i.id")
+  List<Long> findEffectiveFrozenIds(@Param("lineage") Collection<Long> lineage,
+                                    @Param("productIds") Collection<Long> productIds,
+                                    @Param("afterId") Long afterId, Pageable page);
+
+  @Query("select count(i) > 0 from QuoteItem i where i.id = :itemId and" + EFFECTIVE)
+  boolean isEffective(@Param("lineage") Collection<Long> lineage, @Param("itemId") Long itemId);
+
+  @Query("select coalesce(sum(i.computedPricePaise), 0) from QuoteItem i where" + EFFECTIVE)
+  long sumEffectivePrice(@Param("lineage") Collection<Long> lineage);
+
+  // Effective items with every eager association (quotation, area, product, template) in one round trip
+  @Query("select i from QuoteItem i"
+      + " join fetch i.quotation q join fetch q.project qp join fetch qp.client"
+      + " join fetch i.area a join fetch a.project ap join fetch ap.client"
+      + " join fetch i.product p left join fetch p.template"
+      + " where" + EFFECTIVE + " order by i.id")
+  List<QuoteItem> findEffectiveWithProducts(@Param("lineage") Collection<Long> lineage);
 }
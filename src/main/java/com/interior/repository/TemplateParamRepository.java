@@ -2,10 +2,20 @@ package com.interior.repository;
 
 import com.interior.model.TemplateParam;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 
 public interface TemplateParamRepository extends JpaRepository<TemplateParam, Long> {
   List<TemplateParam> findByTemplate_IdOrderByParamName(Long templateId);
-}
 
+  @Query("select r from TemplateParam r join fetch r.template t where t.id in :templateIds order by t.id, r.paramName")
+  List<TemplateParam> findAllByTemplateIds(@Param("templateIds") Collection<Long> templateIds);
+
+  @Modifying
+  @Query("delete from TemplateParam r where r.template.id in :templateIds")
+  int deleteAllByTemplateIds(@Param("templateIds") Collection<Long> templateIds);
+}
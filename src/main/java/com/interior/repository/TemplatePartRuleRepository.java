@@ -2,10 +2,20 @@ package com.interior.repository;
 
 import com.interior.model.TemplatePartRule;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 
 public interface TemplatePartRuleRepository extends JpaRepository<TemplatePartRule, Long> {
   List<TemplatePartRule> findByTemplate_IdOrderByExecutionOrder(Long templateId);
-}
 
+  @Query("select r from TemplatePartRule r join fetch r.template t where t.id in :templateIds order by t.id, r.executionOrder")
+  List<TemplatePartRule> findAllByTemplateIds(@Param("templateIds") Collection<Long> templateIds);
+
+  @Modifying
+  @Query("delete from TemplatePartRule r where r.template.id in :templateIds")
+  int deleteAllByTemplateIds(@Param("templateIds") Collection<Long> templateIds);
+}
@@ -2,10 +2,20 @@ package com.interior.repository;
 
 import com.interior.model.TemplateValidationRule;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 
 public interface TemplateValidationRuleRepository extends JpaRepository<TemplateValidationRule, Long> {
   List<TemplateValidationRule> findByTemplate_Id(Long templateId);
-}
 
+  @Query("select r from TemplateValidationRule r join fetch r.template t where t.id in :templateIds order by t.id, r.id")
+  List<TemplateValidationRule> findAllByTemplateIds(@Param("templateIds") Collection<Long> templateIds);
+
+  @Modifying
+  @Query("delete from TemplateValidationRule r where r.template.id in :templateIds")
+  int deleteAllByTemplateIds(@Param("templateIds") Collection<Long> templateIds);
+}
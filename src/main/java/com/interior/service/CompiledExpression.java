@@ -0,0 +1,283 @@
+package com.interior.service;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+/**
+ * Immutable, pre-parsed form of a template expression.
+ * Variables are kept as references and resolved when the expression is evaluated,
+ * so one instance can be shared across quote items and threads.
+ */
+public final class CompiledExpression {
+
+  private final String source;
+  private final Node root;
+  private final boolean condition;
+  private final Set<String> variables;
+
+  CompiledExpression(String source, Node root, boolean condition) {
+    this.source = source;
+    this.root = root;
+    this.condition = condition;
+    Set<String> names = new LinkedHashSet<>();
+    collectVariables(root, names);
+    this.variables = Collections.unmodifiableSet(names);
+  }
+
+  public String getSource() {
+    return source;
+  }
+
+  /** True if this expression was compiled as a boolean condition (validation rule). */
+  public boolean isCondition() {
+    return condition;
+  }
+
+  /** Names of all variables referenced by this expression, in order of first use. */
+  public Set<String> getVariables() {
+    return variables;
+  }
+
+  Node getRoot() {
+    return root;
+  }
+
+  public double evaluate(Map<String, Double> vars) {
+    return root.eval(vars);
+  }
+
+  public boolean test(Map<String, Double> vars) {
+    return root.eval(vars) != 0;
+  }
+
+  /** Number of operations (not counting constants and variable reads) in this expression. */
+  public int operationCount() {
+    return operationCount(root);
+  }
+
+  /**
+   * Rewrite the tree so every variable reads a fixed slot of a {@code double[]} frame.
+   * Unassigned slots must hold NaN; reading one reports the variable as missing.
+   */
+  Node bind(ToIntFunction<String> slotOf) {
+    return bind(root, name -> {
+      int slot = slotOf.applyAsInt(name);
+      if (slot < 0) {
+        throw new ExpressionEvaluatorService.ExpressionException("Variable '" + name + "' not found in context");
+      }
+      return new Slot(slot, name);
+    });
+  }
+
+  /**
+   * Rewrite the tree, replacing every variable with the node {@code resolve} returns for it:
+   * usually a {@link Slot}, or the inlined tree of another expression.
+   */
+  Node substitute(Function<String, Node> resolve) {
+    return bind(root, resolve);
+  }
+
+  private static Node bind(Node node, Function<String, Node> resolve) {
+    if (node instanceof Var v) {
+      return resolve.apply(v.name());
+    } else if (node instanceof Neg n) {
+      return new Neg(bind(n.operand(), resolve));
+    } else if (node instanceof Binary b) {
+      return new Binary(b.op(), bind(b.left(), resolve), bind(b.right(), resolve));
+    } else if (node instanceof Call c) {
+      List<Node> args = new ArrayList<>(c.args().size());
+      for (Node arg : c.args()) args.add(bind(arg, resolve));
+      return new Call(c.fn(), List.copyOf(args));
+    }
+    return node;
+  }
+
+  private static int operationCount(Node node) {
+    if (node instanceof Neg n) return 1 + operationCount(n.operand());
+    if (node instanceof Binary b) return 1 + operationCount(b.left()) + operationCount(b.right());
+    if (node instanceof Call c) return 1 + c.args().stream().mapToInt(CompiledExpression::operationCount).sum();
+    if (node instanceof Memo m) return operationCount(m.node());
+    return 0;
+  }
+
+  private static void collectVariables(Node node, Set<String> out) {
+    if (node instanceof Var v) {
+      out.add(v.name());
+    } else if (node instanceof Neg n) {
+      collectVariables(n.operand(), out);
+    } else if (node instanceof Binary b) {
+      collectVariables(b.left(), out);
+      collectVariables(b.right(), out);
+    } else if (node instanceof Call c) {
+      for (Node arg : c.args()) collectVariables(arg, out);
+    } else if (node instanceof Memo m) {
+      collectVariables(m.node(), out);
+    }
+  }
+
+  // ---- AST ----
+
+  /** Node of the expression tree. Boolean results are represented as 1.0 / 0.0. */
+  interface Node {
+    double eval(Map<String, Double> vars);
+
+    double eval(double[] slots);
+  }
+
+  record Num(double value) implements Node {
+    public double eval(Map<String, Double> vars) {
+      return value;
+    }
+
+    public double eval(double[] slots) {
+      return value;
+    }
+  }
+
+  record Var(String name) implements Node {
+    public double eval(Map<String, Double> vars) {
+      Double value = vars.get(name);
+      if (value == null) {
+        throw new ExpressionEvaluatorService.ExpressionException("Variable '" + name + "' not found in context");
+      }
+      return value;
+    }
+
+    public double eval(double[] slots) {
+      throw new ExpressionEvaluatorService.ExpressionException("Variable '" + name + "' is not bound to a slot");
+    }
+  }
+
+  /** Variable bound to a frame slot by {@link #bind}. */
+  record Slot(int index, String name) implements Node {
+    public double eval(Map<String, Double> vars) {
+      return new Var(name).eval(vars);
+    }
+
+    public double eval(double[] slots) {
+      return read(slots, index, name);
+    }
+  }
+
+  record Neg(Node operand) implements Node {
+    public double eval(Map<String, Double> vars) {
+      return -operand.eval(vars);
+    }
+
+    public double eval(double[] slots) {
+      return -operand.eval(slots);
+    }
+  }
+
+  record Binary(Op op, Node left, Node right) implements Node {
+    public double eval(Map<String, Double> vars) {
+      return switch (op) {
+        case AND -> truth(left.eval(vars) != 0 && right.eval(vars) != 0);
+        case OR -> truth(left.eval(vars) != 0 || right.eval(vars) != 0);
+        default -> op.apply(left.eval(vars), right.eval(vars));
+      };
+    }
+
+    public double eval(double[] slots) {
+      return switch (op) {
+        case AND -> truth(left.eval(slots) != 0 && right.eval(slots) != 0);
+        case OR -> truth(left.eval(slots) != 0 || right.eval(slots) != 0);
+        default -> op.apply(left.eval(slots), right.eval(slots));
+      };
+    }
+  }
+
+  record Call(Fn fn, List<Node> args) implements Node {
+    public double eval(Map<String, Double> vars) {
+      return switch (fn) {
+        case CEIL -> Math.ceil(args.get(0).eval(vars));
+        case FLOOR -> Math.floor(args.get(0).eval(vars));
+        case MIN -> Math.min(args.get(0).eval(vars), args.get(1).eval(vars));
+        case MAX -> Math.max(args.get(0).eval(vars), args.get(1).eval(vars));
+      };
+    }
+
+    public double eval(double[] slots) {
+      return switch (fn) {
+        case CEIL -> Math.ceil(args.get(0).eval(slots));
+        case FLOOR -> Math.floor(args.get(0).eval(slots));
+        case MIN -> Math.min(args.get(0).eval(slots), args.get(1).eval(slots));
+        case MAX -> Math.max(args.get(0).eval(slots), args.get(1).eval(slots));
+      };
+    }
+
+    double apply(double... values) {
+      return switch (fn) {
+        case CEIL -> Math.ceil(values[0]);
+        case FLOOR -> Math.floor(values[0]);
+        case MIN -> Math.min(values[0], values[1]);
+        case MAX -> Math.max(values[0], values[1]);
+      };
+    }
+  }
+
+  /**
+   * Subexpression shared by several rules of one template. The first evaluation per frame
+   * stores its value in {@code valueSlot} and sets {@code flagSlot}; later uses read it back.
+   */
+  record Memo(int valueSlot, int flagSlot, Node node) implements Node {
+    public double eval(Map<String, Double> vars) {
+      return node.eval(vars);
+    }
+
+    public double eval(double[] slots) {
+      if (slots[flagSlot] != 0) return slots[valueSlot];
+      double value = node.eval(slots);
+      slots[valueSlot] = value;
+      slots[flagSlot] = 1;
+      return value;
+    }
+  }
+
+  enum Op {
+    ADD, SUB, MUL, DIV, GT, LT, GTE, LTE, EQ, NEQ, AND, OR;
+
+    double apply(double l, double r) {
+      return switch (this) {
+        case ADD -> l + r;
+        case SUB -> l - r;
+        case MUL -> l * r;
+        case DIV -> {
+          if (r == 0) throw new ExpressionEvaluatorService.ExpressionException("Division by zero");
+          yield l / r;
+        }
+        case GT -> truth(l > r);
+        case LT -> truth(l < r);
+        case GTE -> truth(l >= r);
+        case LTE -> truth(l <= r);
+        case EQ -> truth(Math.abs(l - r) < 0.0001);
+        case NEQ -> truth(Math.abs(l - r) >= 0.0001);
+        case AND -> truth(l != 0 && r != 0);
+        case OR -> truth(l != 0 || r != 0);
+      };
+    }
+  }
+
+  enum Fn {
+    CEIL(1), FLOOR(1), MIN(2), MAX(2);
+
+    final int arity;
+
+    Fn(int arity) {
+      this.arity = arity;
+    }
+  }
+
+  static double truth(boolean b) {
+    return b ? 1.0 : 0.0;
+  }
+
+  static double read(double[] slots, int index, String name) {
+    double value = slots[index];
+    if (value != value) { // NaN marks an unassigned slot
+      throw new ExpressionEvaluatorService.ExpressionException("Variable '" + name + "' not found in context");
+    }
+    return value;
+  }
+}
@@ -0,0 +1,94 @@
+package com.interior.service;
+
+import com.interior.dto.TemplateCompileStats;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A product template with all of its rule expressions parsed and bound to one
+ * {@link TemplateSymbolTable}. Immutable and detached from JPA, so it can be shared
+ * across quote items and threads; per-item state lives only in the frame.
+ */
+public final class CompiledTemplate {
+
+  private final Long templateId;
+  private final Integer version;
+  private final String code;
+  private final TemplateSymbolTable symbols;
+  private final double[] initialFrame;
+  private final List<DerivedVar> derivedVars;
+  private final List<Validation> validations;
+  private final List<PartRule> partRules;
+  private final TemplateCompileStats stats;
+
+  CompiledTemplate(Long templateId, Integer version, String code, TemplateSymbolTable symbols,
+                   double[] initialFrame, List<DerivedVar> derivedVars,
+                   List<Validation> validations, List<PartRule> partRules, TemplateCompileStats stats) {
+    this.templateId = templateId;
+    this.version = version;
+    this.code = code;
+    this.symbols = symbols;
+    this.initialFrame = initialFrame;
+    this.derivedVars = List.copyOf(derivedVars);
+    this.validations = List.copyOf(validations);
+    this.partRules = List.copyOf(partRules);
+    this.stats = stats;
+  }
+
+  public Long getTemplateId() {
+    return templateId;
+  }
+
+  public Integer getVersion() {
+    return version;
+  }
+
+  public String getCode() {
+    return code;
+  }
+
+  public TemplateSymbolTable getSymbols() {
+    return symbols;
+  }
+
+  /** Derived vars ordered so every var comes after the vars it depends on. */
+  public List<DerivedVar> getDerivedVars() {
+    return derivedVars;
+  }
+
+  public List<Validation> getValidations() {
+    return validations;
+  }
+
+  public List<PartRule> getPartRules() {
+    return partRules;
+  }
+
+  /** What the optimizer saved when this template was compiled. */
+  public TemplateCompileStats getStats() {
+    return stats;
+  }
+
+  /**
+   * Fresh frame with template constants (T, BACK_T, PLINTH) and param defaults filled in.
+   * Every other variable slot is NaN, which the evaluator reports as a missing variable;
+   * memo slots for shared subexpressions start cleared.
+   */
+  public double[] newFrame() {
+    return Arrays.copyOf(initialFrame, initialFrame.length);
+  }
+
+  /** Derived var in dependency order. Rules evaluate derived vars inline and on demand. */
+  public record DerivedVar(String name, String expression, List<String> dependsOn) {
+  }
+
+  public record Validation(String conditionExpr, SlotExpression compiled, String errorMessage) {
+  }
+
+  public record PartRule(String partName, String partType,
+                         SlotExpression width, SlotExpression height,
+                         SlotExpression thickness, SlotExpression qty,
+                         String materialType, String edgeBanding, String grainDirection) {
+  }
+}
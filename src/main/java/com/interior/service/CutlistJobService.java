@@ -0,0 +1,183 @@
+package com.interior.service;
+
+import com.interior.dto.CutlistJobStatus;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs cutlist generation as background jobs so large quotations do not hold a request thread.
+ * Jobs run on a fixed pool with a bounded queue; a full queue rejects the submission. At most one
+ * job per quotation is queued or running: submitting again returns that job. Results are written
+ * in one transaction at the end (see {@link QuotationService#generateCutlist(Long, QuotationService.CutlistProgress)}),
+ * so a cancelled or failed job leaves the previous cutlist as it was.
+ */
+@Service
+public class CutlistJobService {
+
+  public static final String QUEUED = "QUEUED", RUNNING = "RUNNING", SUCCEEDED = "SUCCEEDED",
+      FAILED = "FAILED", CANCELLED = "CANCELLED";
+
+  private final QuotationService quotationService;
+  private final ThreadPoolExecutor executor;
+  private final Duration retention;
+  private final Map<String, Job> jobs = new ConcurrentHashMap<>();
+  private final Map<Long, Job> activeByQuote = new ConcurrentHashMap<>();
+
+  public CutlistJobService(QuotationService quotationService,
+                           @Value("${interior.cutlist-jobs.workers:2}") int workers,
+                           @Value("${interior.cutlist-jobs.queue-capacity:100}") int queueCapacity,
+                           @Value("${interior.cutlist-jobs.retention-minutes:60}") long retentionMinutes) {
+    this.quotationService = quotationService;
+    AtomicInteger threads = new AtomicInteger();
+    this.executor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+        new ArrayBlockingQueue<>(queueCapacity),
+        r -> new Thread(r, "cutlist-job-" + threads.incrementAndGet()));
+    this.retention = Duration.ofMinutes(retentionMinutes);
+  }
+
+  @PreDestroy
+  void shutdown() {
+    executor.shutdownNow();
+  }
+
+  private static final class Job implements QuotationService.CutlistProgress {
+    final String id = UUID.randomUUID().toString();
+    final Long quoteId;
+    final Instant submittedAt = Instant.now();
+    volatile String status = QUEUED;
+    volatile int processed;
+    volatile int total;
+    volatile boolean cancelRequested;
+    volatile Integer cutlistRows;
+    volatile String error;
+    volatile Instant startedAt;
+    volatile Instant finishedAt;
+    volatile Future<?> future;
+
+    Job(Long quoteId) {
+      this.quoteId = quoteId;
+    }
+
+    @Override
+    public void update(int processed, int total) {
+      this.total = total;
+      if (processed > this.processed) this.processed = processed; // workers may report out of order
+    }
+
+    @Override
+    public boolean cancelled() {
+      return cancelRequested;
+    }
+
+    boolean isActive() {
+      return QUEUED.equals(status) || RUNNING.equals(status);
+    }
+
+    CutlistJobStatus snapshot() {
+      CutlistJobStatus s = new CutlistJobStatus();
+      s.setJobId(id);
+      s.setQuoteId(quoteId);
+      s.setStatus(status);
+      s.setProcessed(processed);
+      s.setTotal(total);
+      s.setCutlistRows(cutlistRows);
+      s.setError(error);
+      s.setSubmittedAt(submittedAt);
+      s.setStartedAt(startedAt);
+      s.setFinishedAt(finishedAt);
+      return s;
+    }
+  }
+
+  /**
+   * Queue a regeneration of the quotation's cutlist, or return the job already queued or running for it.
+   *
+   * @throws RejectedExecutionException if the job queue is full
+   */
+  public CutlistJobStatus submit(Long quoteId) {
+    purgeFinished();
+    Job fresh = new Job(quoteId);
+    Job job = activeByQuote.compute(quoteId, (k, current) -> current != null && current.isActive() ? current : fresh);
+    if (job != fresh) return job.snapshot();
+
+    jobs.put(fresh.id, fresh);
+    try {
+      fresh.future = executor.submit(() -> run(fresh));
+    } catch (RejectedExecutionException e) {
+      jobs.remove(fresh.id);
+      activeByQuote.remove(quoteId, fresh);
+      throw e;
+    }
+    return fresh.snapshot();
+  }
+
+  public CutlistJobStatus get(String jobId) {
+    return find(jobId).snapshot();
+  }
+
+  /**
+   * Cancel a job. A queued job never starts; a running one stops at its next item, before writing anything.
+   * Finished jobs are returned unchanged.
+   */
+  public CutlistJobStatus cancel(String jobId) {
+    Job job = find(jobId);
+    synchronized (job) {
+      if (QUEUED.equals(job.status)) {
+        // Null when cancelled before submit() has stored it; run() then sees CANCELLED and returns
+        Future<?> future = job.future;
+        if (future != null) future.cancel(false);
+        finish(job, CANCELLED, null);
+      } else if (RUNNING.equals(job.status)) {
+        job.cancelRequested = true;
+      }
+    }
+    return job.snapshot();
+  }
+
+  private void run(Job job) {
+    synchronized (job) {
+      if (!QUEUED.equals(job.status)) return;
+      job.status = RUNNING;
+      job.startedAt = Instant.now();
+    }
+    try {
+      int rows = quotationService.generateCutlist(job.quoteId, job).size();
+      job.cutlistRows = rows;
+      finish(job, SUCCEEDED, null);
+    } catch (CancellationException e) {
+      finish(job, CANCELLED, null);
+    } catch (RuntimeException e) {
+      finish(job, job.cancelRequested ? CANCELLED : FAILED, job.cancelRequested ? null : String.valueOf(e.getMessage()));
+    }
+  }
+
+  private void finish(Job job, String status, String error) {
+    synchronized (job) {
+      job.error = error;
+      job.finishedAt = Instant.now();
+      job.status = status;
+    }
+    activeByQuote.remove(job.quoteId, job);
+  }
+
+  private Job find(String jobId) {
+    Job job = jobs.get(jobId);
+    if (job == null) throw new NoSuchElementException("Unknown cutlist job " + jobId);
+    return job;
+  }
+
+  // Finished jobs stay pollable for the retention period
+  private void purgeFinished() {
+    Instant cutoff = Instant.now().minus(retention);
+    jobs.values().removeIf(j -> j.finishedAt != null && j.finishedAt.isBefore(cutoff));
+  }
+}
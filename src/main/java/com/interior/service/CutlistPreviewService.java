@@ -0,0 +1,90 @@
+package com.interior.service;
+
+import com.interior.dto.CutlistPreview;
+import com.interior.dto.CutlistPreviewRequest;
+import com.interior.model.Money;
+import com.interior.model.Product;
+import com.interior.model.ProductTemplate;
+import com.interior.repository.ProductRepository;
+import com.interior.repository.ProductTemplateRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+/**
+ * Runs the template pipeline for unsaved inputs so the wizard can show parts, sheets and price
+ * while the user edits dimensions or params. Nothing is written; repeated inputs come straight
+ * from the engine's result cache.
+ */
+@Service
+public class CutlistPreviewService {
+
+  private final ProductRepository productRepository;
+  private final ProductTemplateRepository templateRepository;
+  private final TemplateEngineService templateEngineService;
+  private final PricingService pricingService;
+
+  public CutlistPreviewService(ProductRepository productRepository,
+                               ProductTemplateRepository templateRepository,
+                               TemplateEngineService templateEngineService,
+                               PricingService pricingService) {
+    this.productRepository = productRepository;
+    this.templateRepository = templateRepository;
+    this.templateEngineService = templateEngineService;
+    this.pricingService = pricingService;
+  }
+
+  @Transactional(readOnly = true)
+  public CutlistPreview previewProduct(Long productId, CutlistPreviewRequest req) {
+    Product product = productRepository.findById(productId).orElseThrow();
+    int qty = req.getQuantity() == null ? 1 : req.getQuantity();
+
+    List<GeneratedPart> parts;
+    if (product.getTemplate() != null) {
+      parts = generate(product.getTemplate(), req);
+    } else {
+      // Same 1:1 fallback as QuotationService.generateCutlist
+      parts = List.of(new GeneratedPart(product.getName(), "GENERIC",
+          orZero(req.getWidth()), orZero(req.getHeight()), orZero(req.getDepth()), qty, null, null, null));
+    }
+
+    CutlistPreview out = preview(product.getTemplate(), parts);
+    out.setProductId(productId);
+    out.setPrice(Money.toRupees(pricingService.price(productId,
+        PricingService.Measure.of(qty, req.getHeight(), req.getWidth(), req.getDepth(), req.getTemplateParams())).paise()));
+    return out;
+  }
+
+  @Transactional(readOnly = true)
+  public CutlistPreview previewTemplate(Long templateId, CutlistPreviewRequest req) {
+    ProductTemplate template = templateRepository.findById(templateId).orElseThrow();
+    return preview(template, generate(template, req));
+  }
+
+  private List<GeneratedPart> generate(ProductTemplate template, CutlistPreviewRequest req) {
+    try {
+      return templateEngineService.generateParts(template, req.getWidth(), req.getHeight(), req.getDepth(), req.getTemplateParams());
+    } catch (ExpressionEvaluatorService.ExpressionException e) {
+      throw new TemplateEngineService.TemplateEngineException("Template evaluation error for template '" + template.getCode() + "': " + e.getMessage(), e);
+    }
+  }
+
+  private CutlistPreview preview(ProductTemplate template, List<GeneratedPart> parts) {
+    double area = 0.0;
+    for (GeneratedPart p : parts) area += p.cutHeight() * p.cutWidth() * p.quantity();
+
+    CutlistPreview out = new CutlistPreview();
+    if (template != null) {
+      out.setTemplateId(template.getId());
+      out.setTemplateVersion(template.getVersion());
+    }
+    out.setParts(parts);
+    out.setSheets(QuotationService.estimateSheets(area));
+    return out;
+  }
+
+  private static double orZero(Double v) {
+    return v == null ? 0.0 : v;
+  }
+}
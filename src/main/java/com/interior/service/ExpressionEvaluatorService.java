@@ -1,44 +1,122 @@
 package com.interior.service;
 
+import com.interior.service.CompiledExpression.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
+import java.util.function.ToIntFunction;
 
 /**
  * Safe expression evaluator for template engine.
  * Supports arithmetic, comparisons, boolean ops, and functions (ceil, floor, min, max).
  * Uses whitelist-based tokenization and recursive descent parsing.
+ * Expressions are parsed once into an immutable {@link CompiledExpression} and kept
+ * in an LRU cache keyed by expression text; variables are resolved at evaluation time.
  */
 @Service
 public class ExpressionEvaluatorService {
 
+  private static final Logger log = LoggerFactory.getLogger(ExpressionEvaluatorService.class);
+
+  /** Strategy used by {@link #bind} to turn a slot-bound tree into executable form. */
+  public enum Backend { INTERPRETER, METHOD_HANDLE }
+
+  private final Backend backend;
+  private final LruCache<String, CompiledExpression> numericCache;
+  private final LruCache<String, CompiledExpression> conditionCache;
+
+  public ExpressionEvaluatorService(@Value("${interior.expression.cache-size:4096}") int cacheSize,
+                                    @Value("${interior.expression.backend:interpreter}") String backend) {
+    this.numericCache = new LruCache<>(cacheSize);
+    this.conditionCache = new LruCache<>(cacheSize);
+    this.backend = Backend.valueOf(backend.trim().toUpperCase().replace('-', '_'));
+  }
+
+  public Backend getBackend() {
+    return backend;
+  }
+
   public Double evaluateNumeric(String expr, Map<String, Double> vars) {
-    if (expr == null || expr.trim().isEmpty()) {
-      throw new ExpressionException("Expression is empty");
-    }
+    CompiledExpression compiled = compile(expr);
     try {
-      List<Token> tokens = tokenize(expr, vars);
-      Parser parser = new Parser(tokens);
-      return parser.parseExpression();
+      return compiled.evaluate(vars);
     } catch (Exception e) {
       throw new ExpressionException("Error evaluating expression '" + expr + "': " + e.getMessage(), e);
     }
   }
 
   public Boolean evaluateBoolean(String expr, Map<String, Double> vars) {
+    CompiledExpression compiled = compileCondition(expr);
+    try {
+      return compiled.test(vars);
+    } catch (Exception e) {
+      throw new ExpressionException("Error evaluating boolean expression '" + expr + "': " + e.getMessage(), e);
+    }
+  }
+
+  /**
+   * Parse a numeric expression once; repeated calls with the same text return the cached AST.
+   */
+  public CompiledExpression compile(String expr) {
+    return cached(numericCache, expr, false);
+  }
+
+  /**
+   * Parse a boolean condition (validation rule) once; repeated calls return the cached AST.
+   */
+  public CompiledExpression compileCondition(String expr) {
+    return cached(conditionCache, expr, true);
+  }
+
+  /**
+   * Bind a compiled expression to a slot layout with the configured backend.
+   * {@code slotOf} maps a variable name to its frame index (negative if unknown).
+   * Falls back to the interpreter when the method-handle backend cannot compile the tree.
+   */
+  public SlotExpression bind(CompiledExpression expr, ToIntFunction<String> slotOf) {
+    return toSlotExpression(expr.bind(slotOf), expr.getSource());
+  }
+
+  /**
+   * Turn an already slot-bound tree (e.g. one rewritten by the template optimizer) into executable form.
+   */
+  SlotExpression toSlotExpression(Node root, String source) {
+    if (backend == Backend.METHOD_HANDLE) {
+      try {
+        return MethodHandleExpressionCompiler.compile(root);
+      } catch (RuntimeException | LinkageError e) {
+        log.warn("Falling back to interpreter for expression '{}': {}", source, e.toString());
+      }
+    }
+    return root::eval;
+  }
+
+  private CompiledExpression cached(LruCache<String, CompiledExpression> cache, String expr, boolean condition) {
     if (expr == null || expr.trim().isEmpty()) {
       throw new ExpressionException("Expression is empty");
     }
+    // Expressions that fail to parse are not cached
+    return cache.computeIfAbsent(expr, e -> parse(e, condition));
+  }
+
+  private CompiledExpression parse(String expr, boolean condition) {
     try {
-      List<Token> tokens = tokenize(expr, vars);
-      Parser parser = new Parser(tokens);
-      return parser.parseBooleanExpression();
+      Parser parser = new Parser(tokenize(expr));
+      Node root = condition ? parser.parseBooleanExpression() : parser.parseExpression();
+      if (parser.current() != null) {
+        throw new ExpressionException("Unexpected token: " + parser.current().type);
+      }
+      return new CompiledExpression(expr, root, condition);
     } catch (Exception e) {
-      throw new ExpressionException("Error evaluating boolean expression '" + expr + "': " + e.getMessage(), e);
+      String kind = condition ? "boolean expression" : "expression";
+      throw new ExpressionException("Error parsing " + kind + " '" + expr + "': " + e.getMessage(), e);
     }
   }
 
-  private List<Token> tokenize(String expr, Map<String, Double> vars) {
+  private List<Token> tokenize(String expr) {
     List<Token> tokens = new ArrayList<>();
     int i = 0;
     while (i < expr.length()) {
@@ -72,11 +150,8 @@ public class ExpressionEvaluatorService {
         if (i < expr.length() && expr.charAt(i) == '(') {
           tokens.add(new Token(TokenType.FUNCTION, name));
         } else {
-          // It's a variable - resolve it
-          if (!vars.containsKey(name)) {
-            throw new ExpressionException("Variable '" + name + "' not found in context");
-          }
-          tokens.add(new Token(TokenType.NUMBER, vars.get(name)));
+          // It's a variable - resolved at evaluation time
+          tokens.add(new Token(TokenType.IDENT, name));
         }
         continue;
       }
@@ -127,7 +202,7 @@ public class ExpressionEvaluatorService {
   }
 
   enum TokenType {
-    NUMBER, FUNCTION, PLUS, MINUS, MULTIPLY, DIVIDE, LPAREN, RPAREN, COMMA,
+    NUMBER, IDENT, FUNCTION, PLUS, MINUS, MULTIPLY, DIVIDE, LPAREN, RPAREN, COMMA,
     GT, LT, GTE, LTE, EQ, NEQ, AND, OR
   }
 
@@ -141,7 +216,7 @@ public class ExpressionEvaluatorService {
     }
   }
 
-  class Parser {
+  static class Parser {
     List<Token> tokens;
     int pos = 0;
 
@@ -163,61 +238,59 @@ public class ExpressionEvaluatorService {
     }
 
     // Boolean expression: or
-    boolean parseBooleanExpression() {
+    Node parseBooleanExpression() {
       return parseOr();
     }
 
-    boolean parseOr() {
-      boolean left = parseAnd();
+    Node parseOr() {
+      Node left = parseAnd();
       while (match(TokenType.OR)) {
         consume();
-        boolean right = parseAnd();
-        left = left || right;
+        left = new Binary(Op.OR, left, parseAnd());
       }
       return left;
     }
 
-    boolean parseAnd() {
-      boolean left = parseComparison();
+    Node parseAnd() {
+      Node left = parseComparison();
       while (match(TokenType.AND)) {
         consume();
-        boolean right = parseComparison();
-        left = left && right;
+        left = new Binary(Op.AND, left, parseComparison());
       }
       return left;
     }
 
-    boolean parseComparison() {
-      double left = parseExpression();
+    Node parseComparison() {
+      Node left = parseExpression();
       Token t = current();
       if (t != null && (t.type == TokenType.GT || t.type == TokenType.LT ||
                         t.type == TokenType.GTE || t.type == TokenType.LTE ||
                         t.type == TokenType.EQ || t.type == TokenType.NEQ)) {
         TokenType op = consume().type;
-        double right = parseExpression();
+        Node right = parseExpression();
         return switch (op) {
-          case GT -> left > right;
-          case LT -> left < right;
-          case GTE -> left >= right;
-          case LTE -> left <= right;
-          case EQ -> Math.abs(left - right) < 0.0001;
-          case NEQ -> Math.abs(left - right) >= 0.0001;
+          case GT -> new Binary(Op.GT, left, right);
+          case LT -> new Binary(Op.LT, left, right);
+          case GTE -> new Binary(Op.GTE, left, right);
+          case LTE -> new Binary(Op.LTE, left, right);
+          case EQ -> new Binary(Op.EQ, left, right);
+          case NEQ -> new Binary(Op.NEQ, left, right);
           default -> throw new ExpressionException("Invalid comparison operator");
         };
       }
-      return left != 0; // Non-zero is true
+      return left; // Non-zero is true
     }
 
     // Numeric expression: addition and subtraction
-    double parseExpression() {
-      double result = parseTerm();
+    Node parseExpression() {
+      Node result = parseTerm();
       while (true) {
         if (match(TokenType.PLUS)) {
           consume();
-          result += parseTerm();
+          result = new Binary(Op.ADD, result, parseTerm());
         } else if (match(TokenType.MINUS)) {
           consume();
-          result -= parseTerm();
+          result = new Binary(Op.SUB, result, parseTerm());
         } else {
           break;
         }
@@ -226,17 +299,15 @@ public class ExpressionEvaluatorService {
     }
 
     // Multiplication and division
-    double parseTerm() {
-      double result = parseFactor();
+    Node parseTerm() {
+      Node result = parseFactor();
       while (true) {
         if (match(TokenType.MULTIPLY)) {
           consume();
-          result *= parseFactor();
+          result = new Binary(Op.MUL, result, parseFactor());
         } else if (match(TokenType.DIVIDE)) {
           consume();
-          double divisor = parseFactor();
-          if (divisor == 0) throw new ExpressionException("Division by zero");
-          result /= divisor;
+          result = new Binary(Op.DIV, result, parseFactor());
         } else {
           break;
         }
@@ -244,26 +315,31 @@ public class ExpressionEvaluatorService {
       return result;
     }
 
-    // Factors: numbers, functions, parentheses
-    double parseFactor() {
+    // Factors: numbers, variables, functions, parentheses
+    Node parseFactor() {
       Token t = current();
       if (t == null) throw new ExpressionException("Unexpected end of expression");
 
       // Unary minus
       if (match(TokenType.MINUS)) {
         consume();
-        return -parseFactor();
+        return new Neg(parseFactor());
       }
 
       // Number
       if (match(TokenType.NUMBER)) {
-        return (Double) consume().value;
+        return new Num((Double) consume().value);
+      }
+
+      // Variable
+      if (match(TokenType.IDENT)) {
+        return new Var((String) consume().value);
       }
 
       // Parentheses
       if (match(TokenType.LPAREN)) {
         consume();
-        double result = parseExpression();
+        Node result = parseExpression();
         if (!match(TokenType.RPAREN)) throw new ExpressionException("Missing closing parenthesis");
         consume();
         return result;
@@ -275,7 +351,7 @@ public class ExpressionEvaluatorService {
         if (!match(TokenType.LPAREN)) throw new ExpressionException("Function requires parentheses");
         consume();
 
-        List<Double> args = new ArrayList<>();
+        List<Node> args = new ArrayList<>();
         if (!match(TokenType.RPAREN)) {
           args.add(parseExpression());
           while (match(TokenType.COMMA)) {
@@ -287,32 +363,25 @@ public class ExpressionEvaluatorService {
         if (!match(TokenType.RPAREN)) throw new ExpressionException("Missing closing parenthesis in function");
         consume();
 
-        return evaluateFunction(funcName, args);
+        return function(funcName, args);
       }
 
       throw new ExpressionException("Unexpected token: " + t.type);
     }
 
-    double evaluateFunction(String name, List<Double> args) {
-      return switch (name.toLowerCase()) {
-        case "ceil" -> {
-          if (args.size() != 1) throw new ExpressionException("ceil requires 1 argument");
-          yield Math.ceil(args.get(0));
-        }
-        case "floor" -> {
-          if (args.size() != 1) throw new ExpressionException("floor requires 1 argument");
-          yield Math.floor(args.get(0));
-        }
-        case "min" -> {
-          if (args.size() != 2) throw new ExpressionException("min requires 2 arguments");
-          yield Math.min(args.get(0), args.get(1));
-        }
-        case "max" -> {
-          if (args.size() != 2) throw new ExpressionException("max requires 2 arguments");
-          yield Math.max(args.get(0), args.get(1));
-        }
+    Node function(String name, List<Node> args) {
+      Fn fn = switch (name.toLowerCase()) {
+        case "ceil" -> Fn.CEIL;
+        case "floor" -> Fn.FLOOR;
+        case "min" -> Fn.MIN;
+        case "max" -> Fn.MAX;
         default -> throw new ExpressionException("Unknown function: " + name);
       };
+      if (args.size() != fn.arity) {
+        throw new ExpressionException(name.toLowerCase() + " requires " + fn.arity
+            + (fn.arity == 1 ? " argument" : " arguments"));
+      }
+      return new Call(fn, List.copyOf(args));
     }
   }
 
@@ -0,0 +1,13 @@
+package com.interior.service;
+
+import com.interior.dto.MaterialSummary;
+import com.interior.model.CutlistItem;
+import com.interior.model.QuoteItem;
+import com.interior.model.Quotation;
+
+import java.util.List;
+
+/** Decoded snapshot of a submitted quotation (see {@link QuotationSnapshotService}); read-only, shared between requests. */
+public record FrozenQuote(Quotation quotation, List<QuoteItem> items, List<CutlistItem> cutlist,
+                          MaterialSummary materialSummary) {
+}
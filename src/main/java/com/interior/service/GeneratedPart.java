@@ -0,0 +1,28 @@
+package com.interior.service;
+
+import com.interior.model.CutlistItem;
+import com.interior.model.QuoteItem;
+
+/**
+ * Immutable part produced by evaluating a template. Cached results hold these;
+ * {@link #toCutlistItem} binds a fresh copy to a quote item.
+ */
+public record GeneratedPart(String partName, String partType,
+                            double cutWidth, double cutHeight, double thickness, int quantity,
+                            String materialType, String edgeBanding, String grainDirection) {
+
+  public CutlistItem toCutlistItem(QuoteItem quoteItem) {
+    CutlistItem item = new CutlistItem();
+    item.setQuoteItem(quoteItem);
+    item.setPartName(partName);
+    item.setPartType(partType);
+    item.setCutWidth(cutWidth);
+    item.setCutHeight(cutHeight);
+    item.setThickness(thickness);
+    item.setQuantity(quantity);
+    item.setMaterialType(materialType);
+    item.setEdgeBanding(edgeBanding);
+    item.setGrainDirection(grainDirection);
+    return item;
+  }
+}
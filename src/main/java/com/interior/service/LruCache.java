@@ -0,0 +1,115 @@
+package com.interior.service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Small thread-safe LRU cache with hit/miss counters.
+ * Concurrent misses for the same key share one load.
+ */
+public class LruCache<K, V> {
+
+  private final int maxSize;
+  private final Map<K, V> entries;
+  private final Map<K, CompletableFuture<V>> loading = new ConcurrentHashMap<>();
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+
+  public LruCache(int maxSize) {
+    this.maxSize = maxSize;
+    this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+        return size() > LruCache.this.maxSize;
+      }
+    };
+  }
+
+  public V get(K key) {
+    V value;
+    synchronized (entries) {
+      value = entries.get(key);
+    }
+    (value != null ? hits : misses).incrementAndGet();
+    return value;
+  }
+
+  /** Presence check that neither counts as a hit/miss nor refreshes recency. */
+  public boolean containsKey(K key) {
+    synchronized (entries) {
+      return entries.containsKey(key);
+    }
+  }
+
+  public void put(K key, V value) {
+    synchronized (entries) {
+      entries.put(key, value);
+    }
+  }
+
+  /**
+   * Return the cached value or load it. Only one caller loads a missing key;
+   * others asking for the same key wait for that result.
+   */
+  public V computeIfAbsent(K key, Function<? super K, ? extends V> loader) {
+    V cached = get(key);
+    if (cached != null) return cached;
+
+    CompletableFuture<V> mine = new CompletableFuture<>();
+    CompletableFuture<V> inFlight = loading.putIfAbsent(key, mine);
+    if (inFlight != null) {
+      try {
+        return inFlight.join();
+      } catch (CompletionException e) {
+        throw e.getCause() instanceof RuntimeException re ? re : e;
+      }
+    }
+    try {
+      V value = loader.apply(key);
+      put(key, value);
+      mine.complete(value);
+      return value;
+    } catch (RuntimeException | Error e) {
+      mine.completeExceptionally(e);
+      throw e;
+    } finally {
+      loading.remove(key, mine);
+    }
+  }
+
+  public void removeIf(Predicate<? super K> predicate) {
+    synchronized (entries) {
+      entries.keySet().removeIf(predicate);
+    }
+  }
+
+  public void clear() {
+    synchronized (entries) {
+      entries.clear();
+    }
+  }
+
+  public int size() {
+    synchronized (entries) {
+      return entries.size();
+    }
+  }
+
+  public int getMaxSize() {
+    return maxSize;
+  }
+
+  public long getHits() {
+    return hits.get();
+  }
+
+  public long getMisses() {
+    return misses.get();
+  }
+}
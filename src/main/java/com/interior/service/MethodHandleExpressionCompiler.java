@@ -0,0 +1,223 @@
+package com.interior.service;
+
+import com.interior.service.CompiledExpression.*;
+import org.springframework.asm.ClassWriter;
+import org.springframework.asm.MethodVisitor;
+import org.springframework.asm.Opcodes;
+import org.springframework.asm.Type;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+/**
+ * Compiles a slot-bound expression tree into a single composed {@link MethodHandle}
+ * of type {@code (double[])double}, held as a constant by a hidden class per expression. The JIT
+ * inlines the chain into that class's {@code eval} like straight-line code, so there is no per-node
+ * virtual dispatch left at evaluation time.
+ * Only the evaluator's whitelist is supported: arithmetic, comparisons, &&, ||,
+ * ceil/floor/min/max, plus memoized shared subexpressions from the template optimizer.
+ */
+final class MethodHandleExpressionCompiler {
+
+  private static final MethodType FRAME_TO_DOUBLE = MethodType.methodType(double.class, double[].class);
+  private static final MethodType UNARY = MethodType.methodType(double.class, double.class);
+  private static final MethodType BINARY = MethodType.methodType(double.class, double.class, double.class);
+
+  private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+  private static final byte[] HOLDER = holderClass();
+
+  private static final MethodHandle READ;
+  private static final MethodHandle OP_APPLY;
+  private static final MethodHandle IS_SET;
+  private static final MethodHandle LOAD;
+  private static final MethodHandle STORE;
+  private static final MethodHandle NEG;
+  private static final MethodHandle IS_TRUE;
+  private static final MethodHandle TO_TRUTH;
+  private static final MethodHandle CEIL;
+  private static final MethodHandle FLOOR;
+  private static final MethodHandle MIN;
+  private static final MethodHandle MAX;
+
+  static {
+    try {
+      MethodHandles.Lookup lookup = LOOKUP;
+      READ = lookup.findStatic(CompiledExpression.class, "read",
+          MethodType.methodType(double.class, double[].class, int.class, String.class));
+      OP_APPLY = lookup.findVirtual(Op.class, "apply", BINARY);
+      IS_SET = lookup.findStatic(MethodHandleExpressionCompiler.class, "isSet",
+          MethodType.methodType(boolean.class, double[].class, int.class));
+      LOAD = lookup.findStatic(MethodHandleExpressionCompiler.class, "load",
+          MethodType.methodType(double.class, double[].class, int.class));
+      STORE = lookup.findStatic(MethodHandleExpressionCompiler.class, "store",
+          MethodType.methodType(double.class, double.class, double[].class, int.class, int.class));
+      NEG = lookup.findStatic(MethodHandleExpressionCompiler.class, "neg", UNARY);
+      IS_TRUE = lookup.findStatic(MethodHandleExpressionCompiler.class, "isTrue",
+          MethodType.methodType(boolean.class, double.class));
+      TO_TRUTH = lookup.findStatic(MethodHandleExpressionCompiler.class, "toTruth", UNARY);
+      CEIL = lookup.findStatic(Math.class, "ceil", UNARY);
+      FLOOR = lookup.findStatic(Math.class, "floor", UNARY);
+      MIN = lookup.findStatic(Math.class, "min", BINARY);
+      MAX = lookup.findStatic(Math.class, "max", BINARY);
+    } catch (ReflectiveOperationException e) {
+      throw new ExceptionInInitializerError(e);
+    }
+  }
+
+  private MethodHandleExpressionCompiler() {
+  }
+
+  static SlotExpression compile(Node root) {
+    return define(toHandle(root));
+  }
+
+  private static MethodHandle toHandle(Node node) {
+    if (node instanceof Num n) {
+      return MethodHandles.dropArguments(MethodHandles.constant(double.class, n.value()), 0, double[].class);
+    }
+    if (node instanceof Slot s) {
+      return MethodHandles.insertArguments(READ, 1, s.index(), s.name());
+    }
+    if (node instanceof Neg n) {
+      return MethodHandles.filterReturnValue(toHandle(n.operand()), NEG);
+    }
+    if (node instanceof Binary b) {
+      MethodHandle left = toHandle(b.left());
+      MethodHandle right = toHandle(b.right());
+      return switch (b.op()) {
+        case AND -> MethodHandles.guardWithTest(
+            MethodHandles.filterReturnValue(left, IS_TRUE),
+            MethodHandles.filterReturnValue(right, TO_TRUTH),
+            constant(0.0));
+        case OR -> MethodHandles.guardWithTest(
+            MethodHandles.filterReturnValue(left, IS_TRUE),
+            constant(1.0),
+            MethodHandles.filterReturnValue(right, TO_TRUTH));
+        default -> combine(opHandle(b.op()), left, right);
+      };
+    }
+    if (node instanceof Call c) {
+      return switch (c.fn()) {
+        case CEIL -> MethodHandles.filterReturnValue(toHandle(c.args().get(0)), CEIL);
+        case FLOOR -> MethodHandles.filterReturnValue(toHandle(c.args().get(0)), FLOOR);
+        case MIN -> combine(MIN, toHandle(c.args().get(0)), toHandle(c.args().get(1)));
+        case MAX -> combine(MAX, toHandle(c.args().get(0)), toHandle(c.args().get(1)));
+      };
+    }
+    if (node instanceof Memo m) {
+      // computed(frame) ? frame[value] : store(child(frame), frame)
+      MethodHandle computed = MethodHandles.insertArguments(IS_SET, 1, m.flagSlot());
+      MethodHandle load = MethodHandles.insertArguments(LOAD, 1, m.valueSlot());
+      MethodHandle store = MethodHandles.insertArguments(STORE, 2, m.valueSlot(), m.flagSlot());
+      return MethodHandles.guardWithTest(computed, load, MethodHandles.foldArguments(store, toHandle(m.node())));
+    }
+    throw new ExpressionEvaluatorService.ExpressionException(
+        "Unsupported node for compilation: " + node.getClass().getSimpleName());
+  }
+
+  /** (double,double)double op applied to two (double[])double operands sharing one frame. */
+  private static MethodHandle combine(MethodHandle op, MethodHandle left, MethodHandle right) {
+    MethodHandle spread = MethodHandles.filterArguments(op, 0, left, right);
+    return MethodHandles.permuteArguments(spread, FRAME_TO_DOUBLE, 0, 0);
+  }
+
+  private static MethodHandle constant(double value) {
+    return MethodHandles.dropArguments(MethodHandles.constant(double.class, value), 0, double[].class);
+  }
+
+  private static MethodHandle opHandle(Op op) {
+    // Op.apply keeps the division-by-zero and equality-tolerance rules in one place
+    return MethodHandles.insertArguments(OP_APPLY, 0, op);
+  }
+
+  private static boolean isSet(double[] slots, int flagSlot) {
+    return slots[flagSlot] != 0;
+  }
+
+  private static double load(double[] slots, int valueSlot) {
+    return slots[valueSlot];
+  }
+
+  private static double store(double value, double[] slots, int valueSlot, int flagSlot) {
+    slots[valueSlot] = value;
+    slots[flagSlot] = 1;
+    return value;
+  }
+
+  private static double neg(double v) {
+    return -v;
+  }
+
+  private static boolean isTrue(double v) {
+    return v != 0;
+  }
+
+  private static double toTruth(double v) {
+    return v != 0 ? 1.0 : 0.0;
+  }
+
+  /**
+   * Wrap the chain in a hidden class whose {@code eval} invokes it through a {@code static final} field.
+   * The JIT folds a static final handle to a constant and inlines the whole chain into {@code eval};
+   * through an instance field it would stay an opaque call. Unreferenced classes are unloaded.
+   */
+  private static SlotExpression define(MethodHandle handle) {
+    try {
+      MethodHandles.Lookup hidden = LOOKUP.defineHiddenClassWithClassData(HOLDER, handle, true);
+      return (SlotExpression) hidden.findConstructor(hidden.lookupClass(), MethodType.methodType(void.class)).invoke();
+    } catch (RuntimeException | Error e) {
+      throw e;
+    } catch (Throwable t) {
+      throw new IllegalStateException("Cannot define compiled expression class", t);
+    }
+  }
+
+  // final class Holder implements SlotExpression {
+  //   static final MethodHandle HANDLE = MethodHandles.classData(lookup(), "_", MethodHandle.class);
+  //   public double eval(double[] slots) { return (double) HANDLE.invokeExact(slots); }
+  // }
+  private static byte[] holderClass() {
+    String name = Type.getInternalName(MethodHandleExpressionCompiler.class) + "$Holder";
+    String mh = Type.getInternalName(MethodHandle.class);
+    String mhDesc = Type.getDescriptor(MethodHandle.class);
+    ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+    cw.visit(Opcodes.V17, Opcodes.ACC_FINAL | Opcodes.ACC_SUPER | Opcodes.ACC_SYNTHETIC, name, null,
+        "java/lang/Object", new String[]{Type.getInternalName(SlotExpression.class)});
+    cw.visitField(Opcodes.ACC_PRIVATE | Opcodes.ACC_STATIC | Opcodes.ACC_FINAL, "HANDLE", mhDesc, null, null).visitEnd();
+
+    MethodVisitor clinit = cw.visitMethod(Opcodes.ACC_STATIC, "<clinit>", "()V", null, null);
+    clinit.visitCode();
+    clinit.visitMethodInsn(Opcodes.INVOKESTATIC, "java/lang/invoke/MethodHandles", "lookup",
+        "()Ljava/lang/invoke/MethodHandles$Lookup;", false);
+    clinit.visitLdcInsn("_");
+    clinit.visitLdcInsn(Type.getType(MethodHandle.class));
+    clinit.visitMethodInsn(Opcodes.INVOKESTATIC, "java/lang/invoke/MethodHandles", "classData",
+        "(Ljava/lang/invoke/MethodHandles$Lookup;Ljava/lang/String;Ljava/lang/Class;)Ljava/lang/Object;", false);
+    clinit.visitTypeInsn(Opcodes.CHECKCAST, mh);
+    clinit.visitFieldInsn(Opcodes.PUTSTATIC, name, "HANDLE", mhDesc);
+    clinit.visitInsn(Opcodes.RETURN);
+    clinit.visitMaxs(0, 0);
+    clinit.visitEnd();
+
+    MethodVisitor init = cw.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V", null, null);
+    init.visitCode();
+    init.visitVarInsn(Opcodes.ALOAD, 0);
+    init.visitMethodInsn(Opcodes.INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+    init.visitInsn(Opcodes.RETURN);
+    init.visitMaxs(0, 0);
+    init.visitEnd();
+
+    MethodVisitor eval = cw.visitMethod(Opcodes.ACC_PUBLIC, "eval", "([D)D", null, null);
+    eval.visitCode();
+    eval.visitFieldInsn(Opcodes.GETSTATIC, name, "HANDLE", mhDesc);
+    eval.visitVarInsn(Opcodes.ALOAD, 1);
+    eval.visitMethodInsn(Opcodes.INVOKEVIRTUAL, mh, "invokeExact", "([D)D", false);
+    eval.visitInsn(Opcodes.DRETURN);
+    eval.visitMaxs(0, 0);
+    eval.visitEnd();
+
+    cw.visitEnd();
+    return cw.toByteArray();
+  }
+}
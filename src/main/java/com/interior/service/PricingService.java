@@ -1,34 +1,117 @@
 package com.interior.service;
 
+import com.interior.model.Money;
 import com.interior.model.Product;
+import com.interior.repository.ProductRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Prices quote items from the in-memory {@link RateCard}; no entity is read per price.
+ * Call {@link #reload()} after writing products or template rules (the card holds each product's template
+ * as loaded): it builds a new card and swaps it in atomically, so a price is always computed against one
+ * consistent card.
+ */
 @Service
 public class PricingService {
 
+  private static final Logger log = LoggerFactory.getLogger(PricingService.class);
+
+  private final ProductRepository productRepository;
+  private final Map<String, PricingStrategy> strategies = new HashMap<>();
+  private final PricingStrategy fallback;
+  private final AtomicReference<RateCard> current = new AtomicReference<>();
+
+  public PricingService(ProductRepository productRepository, List<PricingStrategy> strategies) {
+    this.productRepository = productRepository;
+    for (PricingStrategy s : strategies) {
+      if (this.strategies.put(s.model().toUpperCase(), s) != null) {
+        throw new IllegalStateException("Duplicate pricing strategy " + s.model());
+      }
+    }
+    this.fallback = this.strategies.get(PricingStrategies.PerUnit.MODEL);
+  }
+
+  /**
+   * An item's measurements; null dimensions count as 0 and a null quantity as 1.
+   * {@code cacheParts} lets template-based strategies use the generated-parts cache.
+   */
+  public record Measure(int quantity, double height, double width, double depth, Map<String, Double> templateParams,
+                        boolean cacheParts) {
+    public static Measure of(Integer quantity, Double height, Double width, Double depth, Map<String, Double> templateParams) {
+      return new Measure(quantity == null ? 1 : quantity, orZero(height), orZero(width), orZero(depth),
+          templateParams == null ? Map.of() : templateParams, true);
+    }
+
+    /** Same measure, priced without reading or filling the parts cache (bulk, one-off evaluation). */
+    public Measure withoutPartsCache() {
+      return new Measure(quantity, height, width, depth, templateParams, false);
+    }
+
+    private static double orZero(Double v) {
+      return v == null ? 0.0 : v;
+    }
+  }
+
+  /** A price in paise and the rate card it was computed with. */
+  public record Price(long paise, long rateCardVersion) {
+  }
+
+  public RateCard rateCard() {
+    RateCard card = current.get();
+    return card != null ? card : reload();
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  void loadOnStartup() {
+    reload();
+  }
+
+  /** Build a rate card from the products table and make it current. Versions only increase. */
+  public synchronized RateCard reload() {
+    Map<Long, RateCard.Rate> rates = new HashMap<>();
+    for (Product p : productRepository.findAll()) {
+      PricingStrategy strategy = p.getPricingModel() == null ? fallback
+          : strategies.getOrDefault(p.getPricingModel().trim().toUpperCase(), fallback);
+      double rate = p.getUnitRate() == null ? 0.0 : p.getUnitRate();
+      rates.put(p.getId(), new RateCard.Rate(p.getId(), strategy, rate, p.getTemplate()));
+    }
+    RateCard previous = current.get();
+    Instant now = Instant.now();
+    long version = Math.max(now.toEpochMilli(), previous == null ? 0 : previous.getVersion() + 1);
+    RateCard card = new RateCard(version, now, rates);
+    current.set(card);
+    log.info("Rate card {} loaded: {} products", version, rates.size());
+    return card;
+  }
+
+  private synchronized RateCard reloadIfMissing(Long productId) {
+    RateCard latest = rateCard();
+    return latest.contains(productId) ? latest : reload();
+  }
+
+  public Price price(Long productId, Measure measure) {
+    return price(rateCard(), productId, measure);
+  }
+
   /**
-   * Simple starter pricing:
-   * - VOLUME: rate * H*W*D
-   * - AREA:   rate * H*W
-   * - RUNNING_FT: rate * W
-   * - PER_UNIT: rate * qty
-   *
-   * Dimensions assumed in mm. This is intentionally naive and will be refined later.
+   * Price in whole paise: the strategy's unit price is rounded half-up to the paise before the
+   * quantity is applied, so a line is always qty x unit price.
    */
-  public double compute(Product product, Integer qty, Double h, Double w, Double d) {
-    double rate = product.getUnitRate() == null ? 0.0 : product.getUnitRate();
-    String model = product.getPricingModel() == null ? "PER_UNIT" : product.getPricingModel();
-
-    double q = qty == null ? 1 : qty;
-    double hh = h == null ? 0 : h;
-    double ww = w == null ? 0 : w;
-    double dd = d == null ? 0 : d;
-
-    return switch (model.toUpperCase()) {
-      case "VOLUME" -> rate * hh * ww * dd * q;
-      case "AREA" -> rate * hh * ww * q;
-      case "RUNNING_FT" -> rate * ww * q;
-      default -> rate * q; // PER_UNIT
-    };
+  public Price price(RateCard card, Long productId, Measure measure) {
+    // Products saved by paths that do not reload (seeder, imports) are picked up by one reload
+    if (!card.contains(productId)) card = reloadIfMissing(productId);
+    RateCard.Rate rate = card.rate(productId);
+    long unit = Money.ofRupees(rate.strategy().unitPrice(rate, measure));
+    return new Price(Math.multiplyExact(unit, (long) measure.quantity()), card.getVersion());
   }
 }
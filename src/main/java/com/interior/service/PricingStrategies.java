@@ -0,0 +1,103 @@
+package com.interior.service;
+
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/** Built-in pricing models. Dimensions are in mm; rates are rupees per unit of the model's measure. */
+final class PricingStrategies {
+
+  private PricingStrategies() {
+  }
+
+  @Component
+  static class Volume implements PricingStrategy {
+    @Override
+    public String model() { return "VOLUME"; }
+
+    @Override
+    public double unitPrice(RateCard.Rate rate, PricingService.Measure m) {
+      return rate.unitRate() * m.height() * m.width() * m.depth();
+    }
+  }
+
+  @Component
+  static class Area implements PricingStrategy {
+    @Override
+    public String model() { return "AREA"; }
+
+    @Override
+    public double unitPrice(RateCard.Rate rate, PricingService.Measure m) {
+      return rate.unitRate() * m.height() * m.width();
+    }
+  }
+
+  @Component
+  static class RunningFt implements PricingStrategy {
+    @Override
+    public String model() { return "RUNNING_FT"; }
+
+    @Override
+    public double unitPrice(RateCard.Rate rate, PricingService.Measure m) {
+      return rate.unitRate() * m.width();
+    }
+  }
+
+  // Also the fallback for products without, or with an unknown, pricing model
+  @Component
+  static class PerUnit implements PricingStrategy {
+    public static final String MODEL = "PER_UNIT";
+
+    @Override
+    public String model() { return MODEL; }
+
+    @Override
+    public double unitPrice(RateCard.Rate rate, PricingService.Measure m) {
+      return rate.unitRate();
+    }
+  }
+
+  /**
+   * Material cost: rate per 8x4 sheet times the sheets the item's cutlist parts cover.
+   * Fractional sheets are charged; wastage is left to the rate. Products without a
+   * template count as one W x H part, like the cutlist fallback.
+   */
+  @Component
+  static class PerSheet implements PricingStrategy {
+    private final TemplateEngineService templateEngineService;
+
+    PerSheet(TemplateEngineService templateEngineService) {
+      this.templateEngineService = templateEngineService;
+    }
+
+    @Override
+    public String model() { return "PER_SHEET"; }
+
+    @Override
+    public boolean usesTemplateParams() {
+      return true;
+    }
+
+    @Override
+    public double unitPrice(RateCard.Rate rate, PricingService.Measure m) {
+      double area;
+      if (rate.template() == null) {
+        area = m.width() * m.height();
+      } else {
+        List<GeneratedPart> parts;
+        try {
+          parts = m.cacheParts()
+              ? templateEngineService.generateParts(rate.template(), m.width(), m.height(), m.depth(), m.templateParams())
+              : templateEngineService.generatePartsUncached(rate.template(), m.width(), m.height(), m.depth(),
+                  m.templateParams());
+        } catch (ExpressionEvaluatorService.ExpressionException e) {
+          throw new TemplateEngineService.TemplateEngineException("Template evaluation error for template '"
+              + rate.template().getCode() + "': " + e.getMessage(), e);
+        }
+        area = 0.0;
+        for (GeneratedPart p : parts) area += p.cutWidth() * p.cutHeight() * p.quantity();
+      }
+      return rate.unitRate() * area / QuotationService.estimateSheets(0).getSheetAreaMm2();
+    }
+  }
+}
@@ -0,0 +1,20 @@
+package com.interior.service;
+
+/**
+ * How a pricing model turns a product rate and an item's measurements into a unit price.
+ * Strategies are Spring beans; a {@link RateCard} resolves each product's {@code pricingModel}
+ * to one of them when it is loaded, so pricing an item never looks a model up by name.
+ */
+public interface PricingStrategy {
+
+  /** Name matched against {@code Product.pricingModel} (case-insensitive). */
+  String model();
+
+  /** Price of one unit in rupees, before rounding to paise (see {@link PricingService}). */
+  double unitPrice(RateCard.Rate rate, PricingService.Measure measure);
+
+  /** Whether {@link PricingService.Measure#templateParams()} affects the price. */
+  default boolean usesTemplateParams() {
+    return false;
+  }
+}
@@ -0,0 +1,88 @@
+package com.interior.service;
+
+import com.interior.model.ProductTemplate;
+import com.interior.model.TemplateDerivedVar;
+import com.interior.repository.*;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes to template rule rows. Every write is checked by compiling the resulting
+ * template first, so broken expressions or derived-var cycles never reach the database,
+ * and bumps the template version so cached compiled forms are invalidated.
+ */
+@Service
+public class ProductTemplateService {
+
+  private final ProductTemplateRepository templateRepository;
+  private final TemplateParamRepository paramRepository;
+  private final TemplateDerivedVarRepository derivedVarRepository;
+  private final TemplatePartRuleRepository partRuleRepository;
+  private final TemplateValidationRuleRepository validationRuleRepository;
+  private final TemplateCompiler templateCompiler;
+  private final TemplateEngineService templateEngineService;
+  private final ApplicationEventPublisher events;
+
+  public ProductTemplateService(ProductTemplateRepository templateRepository,
+                                TemplateParamRepository paramRepository,
+                                TemplateDerivedVarRepository derivedVarRepository,
+                                TemplatePartRuleRepository partRuleRepository,
+                                TemplateValidationRuleRepository validationRuleRepository,
+                                TemplateCompiler templateCompiler,
+                                TemplateEngineService templateEngineService,
+                                ApplicationEventPublisher events) {
+    this.templateRepository = templateRepository;
+    this.paramRepository = paramRepository;
+    this.derivedVarRepository = derivedVarRepository;
+    this.partRuleRepository = partRuleRepository;
+    this.validationRuleRepository = validationRuleRepository;
+    this.templateCompiler = templateCompiler;
+    this.templateEngineService = templateEngineService;
+    this.events = events;
+  }
+
+  /**
+   * Replace all derived vars of a template. The new set is compiled against the template's
+   * current params and rules; cycles are rejected and executionOrder is renumbered to the
+   * dependency order.
+   */
+  @Transactional
+  public List<TemplateDerivedVar> replaceDerivedVars(Long templateId, List<TemplateDerivedVar> derivedVars) {
+    ProductTemplate template = templateRepository.findById(templateId).orElseThrow();
+    CompiledTemplate compiled = templateCompiler.compile(template,
+        paramRepository.findByTemplate_IdOrderByParamName(templateId),
+        derivedVars,
+        validationRuleRepository.findByTemplate_Id(templateId),
+        partRuleRepository.findByTemplate_IdOrderByExecutionOrder(templateId));
+
+    Map<String, Integer> order = new HashMap<>();
+    List<CompiledTemplate.DerivedVar> sorted = compiled.getDerivedVars();
+    for (int i = 0; i < sorted.size(); i++) order.put(sorted.get(i).name(), i + 1);
+
+    derivedVarRepository.deleteAll(derivedVarRepository.findByTemplate_IdOrderByExecutionOrder(templateId));
+    for (TemplateDerivedVar v : derivedVars) {
+      v.setId(null);
+      v.setTemplate(template);
+      v.setExecutionOrder(order.get(v.getVarName()));
+    }
+    derivedVarRepository.saveAll(derivedVars);
+    rulesChanged(template);
+    return derivedVarRepository.findByTemplate_IdOrderByExecutionOrder(templateId);
+  }
+
+  /**
+   * Bump the template version and drop its compiled form, so this node and any node holding
+   * the old version recompile from the new rows. Products priced from the template are repriced after commit.
+   */
+  private void rulesChanged(ProductTemplate template) {
+    template.setVersion(template.getVersion() == null ? 1 : template.getVersion() + 1);
+    templateRepository.save(template);
+    templateEngineService.evictTemplate(template.getId());
+    events.publishEvent(new TemplatesChangedEvent(List.of(template.getId())));
+  }
+}
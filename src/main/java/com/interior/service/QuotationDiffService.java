@@ -0,0 +1,198 @@
+package com.interior.service;
+
+import com.interior.dto.QuoteDiff;
+import com.interior.model.CutlistItem;
+import com.interior.model.Quotation;
+import com.interior.model.QuoteItem;
+import com.interior.repository.CutlistItemRepository;
+import com.interior.repository.QuotationRepository;
+import com.interior.repository.QuoteItemRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.*;
+
+/**
+ * Compares two versions of a project's quotation. Items are hash-joined on (area, product, width,
+ * height, depth): the older version's items are bucketed by that key, then each item of the newer
+ * version probes its bucket once. Cutlists are compared through per-material aggregates, so no cutlist
+ * rows are loaded. Submitted versions are read from their snapshot.
+ */
+@Service
+public class QuotationDiffService {
+
+  private final QuotationRepository quotationRepository;
+  private final QuoteItemRepository quoteItemRepository;
+  private final CutlistItemRepository cutlistItemRepository;
+  private final QuotationSnapshotService snapshotService;
+
+  public QuotationDiffService(QuotationRepository quotationRepository,
+                              QuoteItemRepository quoteItemRepository,
+                              CutlistItemRepository cutlistItemRepository,
+                              QuotationSnapshotService snapshotService) {
+    this.quotationRepository = quotationRepository;
+    this.quoteItemRepository = quoteItemRepository;
+    this.cutlistItemRepository = cutlistItemRepository;
+    this.snapshotService = snapshotService;
+  }
+
+  private record LineKey(Long areaId, Long productId, Double width, Double height, Double depth) {
+    static LineKey of(QuoteItem i) {
+      return new LineKey(i.getArea().getId(), i.getProduct().getId(), i.getWidth(), i.getHeight(), i.getDepth());
+    }
+  }
+
+  @Transactional(readOnly = true)
+  public QuoteDiff diff(Long fromQuoteId, Long toQuoteId) {
+    Quotation from = quotationRepository.findById(fromQuoteId).orElseThrow();
+    Quotation to = quotationRepository.findById(toQuoteId).orElseThrow();
+    if (!from.getProject().getId().equals(to.getProject().getId())) {
+      throw new IllegalArgumentException("Quotations " + fromQuoteId + " and " + toQuoteId + " belong to different projects");
+    }
+
+    QuoteDiff out = new QuoteDiff();
+    out.setFromQuoteId(fromQuoteId);
+    out.setToQuoteId(toQuoteId);
+    out.setFromVersionNo(from.getVersionNo());
+    out.setToVersionNo(to.getVersionNo());
+    out.setTotalDeltaPaise(to.getTotalPricePaise() - from.getTotalPricePaise());
+
+    // Build side: older items by key; several lines may share a key
+    Map<LineKey, List<QuoteItem>> buckets = new HashMap<>();
+    List<QuoteItem> fromItems = items(fromQuoteId);
+    for (QuoteItem i : fromItems) {
+      buckets.computeIfAbsent(LineKey.of(i), k -> new ArrayList<>(1)).add(i);
+    }
+
+    // Probe side
+    Set<Long> matched = new HashSet<>();
+    for (QuoteItem t : items(toQuoteId)) {
+      List<QuoteItem> bucket = buckets.get(LineKey.of(t));
+      QuoteItem f = bucket == null || bucket.isEmpty() ? null : take(bucket, t);
+      if (f == null) {
+        out.getAdded().add(line(null, t));
+        continue;
+      }
+      matched.add(f.getId());
+      QuoteDiff.Line line = line(f, t);
+      if (line.getChanges().isEmpty()) {
+        out.setUnchangedCount(out.getUnchangedCount() + 1);
+      } else {
+        out.getModified().add(line);
+      }
+    }
+    for (QuoteItem f : fromItems) {
+      if (!matched.contains(f.getId())) out.getRemoved().add(line(f, null));
+    }
+
+    cutlistDelta(fromQuoteId, toQuoteId, out);
+    return out;
+  }
+
+  private List<QuoteItem> items(Long quoteId) {
+    FrozenQuote snapshot = snapshotService.find(quoteId);
+    if (snapshot != null) return snapshot.items();
+    return quoteItemRepository.findEffectiveWithProducts(quotationRepository.findLineageIds(quoteId));
+  }
+
+  // Prefer the same row (shared by copy-on-write versions), else the first line with the key
+  private static QuoteItem take(List<QuoteItem> bucket, QuoteItem probe) {
+    for (int k = 0; k < bucket.size(); k++) {
+      if (bucket.get(k).getId().equals(probe.getId())) return bucket.remove(k);
+    }
+    return bucket.remove(0);
+  }
+
+  private static QuoteDiff.Line line(QuoteItem f, QuoteItem t) {
+    QuoteItem any = t != null ? t : f;
+    QuoteDiff.Line line = new QuoteDiff.Line();
+    line.setAreaId(any.getArea().getId());
+    line.setAreaName(any.getArea().getName());
+    line.setProductId(any.getProduct().getId());
+    line.setProductName(any.getProduct().getName());
+    line.setWidth(any.getWidth());
+    line.setHeight(any.getHeight());
+    line.setDepth(any.getDepth());
+    if (f != null) {
+      line.setFromItemId(f.getId());
+      line.setFromQuantity(f.getQuantity());
+      line.setFromPricePaise(f.getComputedPricePaise());
+    }
+    if (t != null) {
+      line.setToItemId(t.getId());
+      line.setToQuantity(t.getQuantity());
+      line.setToPricePaise(t.getComputedPricePaise());
+    }
+    line.setPriceDeltaPaise(orZero(line.getToPricePaise()) - orZero(line.getFromPricePaise()));
+    if (f != null && t != null && !f.getId().equals(t.getId())) {
+      if (!Objects.equals(f.getQuantity(), t.getQuantity())) line.getChanges().add("quantity");
+      if (!Objects.equals(f.getTemplateParamsJson(), t.getTemplateParamsJson())) line.getChanges().add("templateParams");
+      if (!Objects.equals(f.getNotes(), t.getNotes())) line.getChanges().add("notes");
+      if (f.getComputedPricePaise() != t.getComputedPricePaise()) line.getChanges().add("price");
+    }
+    return line;
+  }
+
+  private void cutlistDelta(Long fromQuoteId, Long toQuoteId, QuoteDiff out) {
+    Map<List<Object>, QuoteDiff.CutlistDelta> groups = new LinkedHashMap<>();
+    double fromArea = 0, toArea = 0;
+    for (MaterialSum m : materialSums(fromQuoteId)) {
+      QuoteDiff.CutlistDelta d = group(groups, m);
+      d.setFromParts(m.parts());
+      d.setFromAreaMm2(m.areaMm2());
+      fromArea += d.getFromAreaMm2();
+    }
+    for (MaterialSum m : materialSums(toQuoteId)) {
+      QuoteDiff.CutlistDelta d = group(groups, m);
+      d.setToParts(m.parts());
+      d.setToAreaMm2(m.areaMm2());
+      toArea += d.getToAreaMm2();
+    }
+    for (QuoteDiff.CutlistDelta d : groups.values()) {
+      d.setPartsDelta(d.getToParts() - d.getFromParts());
+      d.setAreaDeltaMm2(d.getToAreaMm2() - d.getFromAreaMm2());
+      if (d.getPartsDelta() != 0 || d.getAreaDeltaMm2() != 0) out.getCutlist().add(d);
+    }
+    out.setSheetCountDelta(QuotationService.estimateSheets(toArea).getSheetCount()
+        - QuotationService.estimateSheets(fromArea).getSheetCount());
+  }
+
+  private record MaterialSum(String materialType, Double thickness, long parts, double areaMm2) {
+  }
+
+  private List<MaterialSum> materialSums(Long quoteId) {
+    FrozenQuote snapshot = snapshotService.find(quoteId);
+    if (snapshot == null) {
+      return cutlistItemRepository.sumByMaterial(quoteId).stream()
+          .map(m -> new MaterialSum(m.getMaterialType(), m.getThickness(), orZero(m.getParts()), orZero(m.getAreaMm2())))
+          .toList();
+    }
+    // Same grouping as CutlistItemRepository.sumByMaterial, over the frozen rows
+    Map<List<Object>, MaterialSum> sums = new LinkedHashMap<>();
+    for (CutlistItem c : snapshot.cutlist()) {
+      int qty = c.getQuantity() == null ? 0 : c.getQuantity();
+      double area = c.getCutWidth() == null || c.getCutHeight() == null ? 0 : c.getCutWidth() * c.getCutHeight() * qty;
+      sums.merge(Arrays.asList(c.getMaterialType(), c.getThickness()),
+          new MaterialSum(c.getMaterialType(), c.getThickness(), qty, area),
+          (a, b) -> new MaterialSum(a.materialType(), a.thickness(), a.parts() + b.parts(), a.areaMm2() + b.areaMm2()));
+    }
+    return new ArrayList<>(sums.values());
+  }
+
+  private static QuoteDiff.CutlistDelta group(Map<List<Object>, QuoteDiff.CutlistDelta> groups, MaterialSum m) {
+    return groups.computeIfAbsent(Arrays.asList(m.materialType(), m.thickness()), k -> {
+      QuoteDiff.CutlistDelta d = new QuoteDiff.CutlistDelta();
+      d.setMaterialType(m.materialType());
+      d.setThickness(m.thickness());
+      return d;
+    });
+  }
+
+  private static double orZero(Double v) {
+    return v == null ? 0.0 : v;
+  }
+
+  private static long orZero(Long v) {
+    return v == null ? 0L : v;
+  }
+}
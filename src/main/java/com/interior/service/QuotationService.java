@@ -1,14 +1,28 @@
 package com.interior.service;
 
 import com.interior.dto.MaterialSummary;
+import com.interior.dto.QuoteItemLine;
 import com.interior.dto.QuoteTotal;
 import com.interior.model.*;
 import com.interior.repository.*;
+import jakarta.persistence.EntityManager;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
 
 @Service
 public class QuotationService {
@@ -21,6 +35,13 @@ public class QuotationService {
   private final CutlistItemRepository cutlistItemRepository;
   private final PricingService pricingService;
   private final TemplateEngineService templateEngineService;
+  private final QuotationSnapshotService snapshotService;
+  private final ApplicationEventPublisher events;
+  private final EntityManager entityManager;
+  private final TransactionTemplate tx;
+  private final TransactionTemplate readTx;
+
+  private static final int MAX_ATTEMPTS = 8;
 
   public QuotationService(QuotationRepository quotationRepository,
                           QuoteItemRepository quoteItemRepository,
@@ -29,7 +50,11 @@ public class QuotationService {
                           AreaRepository areaRepository,
                           CutlistItemRepository cutlistItemRepository,
                           PricingService pricingService,
-                          TemplateEngineService templateEngineService) {
+                          TemplateEngineService templateEngineService,
+                          QuotationSnapshotService snapshotService,
+                          ApplicationEventPublisher events,
+                          EntityManager entityManager,
+                          PlatformTransactionManager transactionManager) {
     this.quotationRepository = quotationRepository;
     this.quoteItemRepository = quoteItemRepository;
     this.productRepository = productRepository;
@@ -38,16 +63,22 @@ public class QuotationService {
     this.cutlistItemRepository = cutlistItemRepository;
     this.pricingService = pricingService;
     this.templateEngineService = templateEngineService;
+    this.snapshotService = snapshotService;
+    this.events = events;
+    this.entityManager = entityManager;
+    this.tx = new TransactionTemplate(transactionManager);
+    this.readTx = new TransactionTemplate(transactionManager);
+    this.readTx.setReadOnly(true);
   }
 
   public Quotation loadOrCreateDraft(Long projectId) {
-    return quotationRepository.findFirstByProject_IdAndStatus(projectId, "DRAFT")
+    return quotationRepository.findFirstByProject_IdAndStatusOrderByVersionNoDesc(projectId, "DRAFT")
       .orElseGet(() -> {
         Project project = projectRepository.findById(projectId).orElseThrow();
         Quotation q = new Quotation();
         q.setProject(project);
         q.setStatus("DRAFT");
-        q.setTotalPrice(0.0);
+        q.setTotalPricePaise(0);
         q.setVersionNo(1L);
         return quotationRepository.save(q);
       });
@@ -61,103 +92,307 @@ public class QuotationService {
     return quotationRepository.findById(quoteId).orElseThrow();
   }
 
-  @Transactional
+  // Item edits adjust Quotation.totalPrice by the item's price delta instead of re-summing all items
+  // and publish a QuoteItemsChangedEvent (see QuoteRecomputeService).
+  // The quotation is @Version-ed; an edit that loses a race with another write to the same quotation
+  // is retried in a fresh transaction.
+  // Versions are copy-on-write: editing an item inherited from an earlier version adds an overriding
+  // item to this version, and deleting one records its id in removedItemIds; the earlier version is untouched.
   public QuoteItem addItem(Long quoteId, Long areaId, Long productId, QuoteItem payload) {
-    Quotation quotation = quotationRepository.findById(quoteId).orElseThrow();
-    if (!"DRAFT".equalsIgnoreCase(quotation.getStatus())) {
-      throw new IllegalStateException("Cannot modify a non-draft quotation");
-    }
-    Area area = areaRepository.findById(areaId).orElseThrow();
-    Product product = productRepository.findById(productId).orElseThrow();
+    return retryOnConflict(() -> {
+      Quotation quotation = quotationRepository.findById(quoteId).orElseThrow();
+      requireEditable(quotation);
+      Area area = areaRepository.findById(areaId).orElseThrow();
+      Product product = productRepository.findById(productId).orElseThrow();
+
+      QuoteItem item = new QuoteItem();
+      item.setQuotation(quotation);
+      item.setArea(area);
+      item.setProduct(product);
+      item.setQuantity(payload.getQuantity() == null ? 1 : payload.getQuantity());
+      item.setHeight(payload.getHeight());
+      item.setWidth(payload.getWidth());
+      item.setDepth(payload.getDepth());
+      item.setNotes(payload.getNotes());
+      item.setTemplateParams(templateEngineService.resolveTemplateParams(product, payload.getTemplateParamsJson()));
+
+      long price = applyPrice(item, pricingService.rateCard());
+      item = quoteItemRepository.save(item);
+
+      applyDelta(quotation, price);
+      events.publishEvent(new QuoteItemsChangedEvent(quoteId));
+      return item;
+    });
+  }
 
-    QuoteItem item = new QuoteItem();
-    item.setQuotation(quotation);
-    item.setArea(area);
-    item.setProduct(product);
-    item.setQuantity(payload.getQuantity() == null ? 1 : payload.getQuantity());
-    item.setHeight(payload.getHeight());
-    item.setWidth(payload.getWidth());
-    item.setDepth(payload.getDepth());
-    item.setNotes(payload.getNotes());
-    item.setTemplateParamsJson(payload.getTemplateParamsJson());  // Store template params
-
-    double price = pricingService.compute(product, item.getQuantity(), item.getHeight(), item.getWidth(), item.getDepth());
-    item.setComputedPrice(price);
-    item = quoteItemRepository.save(item);
-
-    recalcTotal(quoteId);
-    return item;
+  /**
+   * Add many items in one transaction: areas, products and template params are each resolved with one
+   * query, items are inserted in JDBC batches and the total is updated once. Any invalid line rejects
+   * the whole batch, listing every problem by line number (1-based).
+   */
+  public List<QuoteItem> addItems(Long quoteId, List<QuoteItemLine> lines) {
+    return retryOnConflict(() -> {
+      Quotation quotation = quotationRepository.findById(quoteId).orElseThrow();
+      requireEditable(quotation);
+
+      Set<Long> areaIds = new HashSet<>();
+      Set<Long> productIds = new HashSet<>();
+      for (QuoteItemLine line : lines) {
+        if (line.getAreaId() != null) areaIds.add(line.getAreaId());
+        if (line.getProductId() != null) productIds.add(line.getProductId());
+      }
+      Map<Long, Area> areas = new HashMap<>();
+      for (Area a : areaRepository.findAllWithProjectById(areaIds)) areas.put(a.getId(), a);
+      Map<Long, Product> products = new HashMap<>();
+      Set<Long> templateIds = new HashSet<>();
+      for (Product p : productRepository.findAllWithTemplateById(productIds)) {
+        products.put(p.getId(), p);
+        if (p.getTemplate() != null) templateIds.add(p.getTemplate().getId());
+      }
+      Map<Long, List<TemplateParam>> templateParams = templateEngineService.loadTemplateParams(templateIds);
+      RateCard rateCard = pricingService.rateCard();
+
+      List<QuoteItem> items = new ArrayList<>(lines.size());
+      List<String> errors = new ArrayList<>();
+      long delta = 0;
+      for (int i = 0; i < lines.size(); i++) {
+        QuoteItemLine line = lines.get(i);
+        Area area = areas.get(line.getAreaId());
+        Product product = products.get(line.getProductId());
+        if (area == null) errors.add("line " + (i + 1) + ": unknown area " + line.getAreaId());
+        if (product == null) errors.add("line " + (i + 1) + ": unknown product " + line.getProductId());
+        if (area == null || product == null) continue;
+
+        QuoteItem item = new QuoteItem();
+        item.setQuotation(quotation);
+        item.setArea(area);
+        item.setProduct(product);
+        item.setQuantity(line.getQuantity() == null ? 1 : line.getQuantity());
+        item.setHeight(line.getHeight());
+        item.setWidth(line.getWidth());
+        item.setDepth(line.getDepth());
+        item.setNotes(line.getNotes());
+        try {
+          List<TemplateParam> params = product.getTemplate() == null ? List.of()
+              : templateParams.getOrDefault(product.getTemplate().getId(), List.of());
+          item.setTemplateParams(templateEngineService.resolveTemplateParams(line.getTemplateParamsJson(), params));
+          delta += applyPrice(item, rateCard);
+        } catch (TemplateEngineService.TemplateEngineException e) {
+          errors.add("line " + (i + 1) + ": " + e.getMessage());
+          continue;
+        }
+
+        items.add(item);
+      }
+      if (!errors.isEmpty()) {
+        throw new IllegalArgumentException("Invalid items: " + String.join("; ", errors));
+      }
+
+      List<QuoteItem> saved = quoteItemRepository.saveAll(items);
+      applyDelta(quotation, delta);
+      events.publishEvent(new QuoteItemsChangedEvent(quoteId));
+      return saved;
+    });
   }
 
-  @Transactional
   public QuoteItem updateItem(Long itemId, QuoteItem payload) {
-    QuoteItem item = quoteItemRepository.findById(itemId).orElseThrow();
-    Quotation q = item.getQuotation();
-    if (!"DRAFT".equalsIgnoreCase(q.getStatus())) {
-      throw new IllegalStateException("Cannot modify a non-draft quotation");
-    }
-    item.setQuantity(payload.getQuantity() == null ? item.getQuantity() : payload.getQuantity());
-    item.setHeight(payload.getHeight());
-    item.setWidth(payload.getWidth());
-    item.setDepth(payload.getDepth());
-    item.setNotes(payload.getNotes());
-    if (payload.getTemplateParamsJson() != null) {
-      item.setTemplateParamsJson(payload.getTemplateParamsJson());
-    }
+    return updateItem(editableQuoteOf(itemId), itemId, payload);
+  }
+
+  public QuoteItem updateItem(Long quoteId, Long itemId, QuoteItem payload) {
+    return retryOnConflict(() -> {
+      Quotation q = quotationRepository.findById(quoteId).orElseThrow();
+      requireEditable(q);
+      QuoteItem item = effectiveItem(q, itemId);
+      long oldPrice = item.getComputedPricePaise();
+      if (!item.getQuotation().getId().equals(quoteId)) {
+        cutlistItemRepository.deleteAllByQuoteItemIds(quoteId, List.of(itemId));
+        item = overrideOf(q, item);
+      }
+      item.setQuantity(payload.getQuantity() == null ? item.getQuantity() : payload.getQuantity());
+      item.setHeight(payload.getHeight());
+      item.setWidth(payload.getWidth());
+      item.setDepth(payload.getDepth());
+      item.setNotes(payload.getNotes());
+      if (payload.getTemplateParamsJson() != null) {
+        item.getTemplateParams().clear();
+        item.getTemplateParams().putAll(templateEngineService.resolveTemplateParams(item.getProduct(), payload.getTemplateParamsJson()));
+      }
 
-    double price = pricingService.compute(item.getProduct(), item.getQuantity(), item.getHeight(), item.getWidth(), item.getDepth());
-    item.setComputedPrice(price);
+      long price = applyPrice(item, pricingService.rateCard());
 
-    item = quoteItemRepository.save(item);
-    recalcTotal(q.getId());
-    return item;
+      item = quoteItemRepository.save(item);
+      applyDelta(q, price - oldPrice);
+      events.publishEvent(new QuoteItemsChangedEvent(quoteId));
+      return item;
+    });
   }
 
-  @Transactional
   public void deleteItem(Long itemId) {
-    QuoteItem item = quoteItemRepository.findById(itemId).orElseThrow();
-    Long quoteId = item.getQuotation().getId();
-    if (!"DRAFT".equalsIgnoreCase(item.getQuotation().getStatus())) {
-      throw new IllegalStateException("Cannot modify a non-draft quotation");
-    }
-    quoteItemRepository.deleteById(itemId);
-    recalcTotal(quoteId);
+    deleteItem(editableQuoteOf(itemId), itemId);
   }
 
+  // Item-only routes edit the project's latest draft when it still has the item (possibly inherited
+  // from a submitted version), else the version that owns the item
+  private Long editableQuoteOf(Long itemId) {
+    Quotation owner = quoteItemRepository.findById(itemId).orElseThrow().getQuotation();
+    if ("DRAFT".equals(owner.getStatus())) return owner.getId();
+    return quotationRepository.findFirstByProject_IdAndStatusOrderByVersionNoDesc(owner.getProject().getId(), "DRAFT")
+        .filter(d -> quoteItemRepository.isEffective(quotationRepository.findLineageIds(d.getId()), itemId))
+        .map(Quotation::getId)
+        .orElse(owner.getId());
+  }
+
+  public void deleteItem(Long quoteId, Long itemId) {
+    retryOnConflict(() -> {
+      Quotation q = quotationRepository.findById(quoteId).orElseThrow();
+      requireEditable(q);
+      QuoteItem item = effectiveItem(q, itemId);
+      cutlistItemRepository.deleteAllByQuoteItemIds(quoteId, List.of(itemId));
+      if (item.getQuotation().getId().equals(quoteId)) {
+        quoteItemRepository.delete(item);
+        // Deleting an override must not bring back the item it replaced
+        if (item.getSourceItemId() != null) q.getRemovedItemIds().add(item.getSourceItemId());
+      } else {
+        q.getRemovedItemIds().add(itemId);
+      }
+      applyDelta(q, -item.getComputedPricePaise());
+      events.publishEvent(new QuoteItemsChangedEvent(quoteId));
+      return null;
+    });
+  }
+
+  // Effective items: this version's own items plus those inherited from earlier versions and not replaced or removed.
+  // Inherited rows are returned detached, as items of the listed version.
   public List<QuoteItem> listItems(Long quoteId) {
-    return quoteItemRepository.findByQuotation_Id(quoteId);
+    FrozenQuote snapshot = snapshotService.find(quoteId);
+    if (snapshot != null) return snapshot.items();
+    List<QuoteItem> items = quoteItemRepository.findEffective(quotationRepository.findLineageIds(quoteId));
+    Quotation q = null;
+    for (QuoteItem it : items) {
+      if (it.getQuotation().getId().equals(quoteId)) continue;
+      if (q == null) q = quotationRepository.findById(quoteId).orElseThrow();
+      entityManager.detach(it);
+      it.setQuotation(q);
+    }
+    return items;
   }
 
-  @Transactional
+  // Reconciliation: re-sum item prices in the database and report how far the maintained total had drifted
   public QuoteTotal recalcTotal(Long quoteId) {
-    List<QuoteItem> items = quoteItemRepository.findByQuotation_Id(quoteId);
-    double total = 0.0;
-    for (QuoteItem i : items) {
-      if (i.getComputedPrice() != null) total += i.getComputedPrice();
+    return retryOnConflict(() -> {
+      Quotation q = quotationRepository.findById(quoteId).orElseThrow();
+      long total = quoteItemRepository.sumEffectivePrice(quotationRepository.findLineageIds(quoteId));
+      long stored = q.getTotalPricePaise();
+      q.setTotalPricePaise(total);
+      quotationRepository.save(q);
+
+      QuoteTotal out = new QuoteTotal();
+      out.setQuoteId(quoteId);
+      out.setTotalPricePaise(total);
+      out.setDriftPaise(total - stored);
+      return out;
+    });
+  }
+
+  // Submitting freezes the quotation: its cutlist is brought up to date, then items, cutlist, material
+  // summary and total are stored as one compressed snapshot that later reads are served from.
+  // The snapshot replaces the quotation's cutlist rows.
+  public Quotation submit(Long quoteId) {
+    return retryOnConflict(() -> {
+      Quotation q = quotationRepository.findById(quoteId).orElseThrow();
+      if ("SUBMITTED".equalsIgnoreCase(q.getStatus()) && snapshotService.find(quoteId) != null) {
+        return q;
+      }
+      List<CutlistItem> cutlist = generateCutlist(quoteId);
+      q.setStatus("SUBMITTED");
+      q = quotationRepository.saveAndFlush(q);
+
+      List<QuoteItem> items = quoteItemRepository.findEffectiveWithProducts(quotationRepository.findLineageIds(quoteId));
+      snapshotService.store(q, items, cutlist, materialSummary(quoteId, cutlist));
+      cutlistItemRepository.deleteAllByQuotationId(quoteId);
+      return q;
+    });
+  }
+
+  // Only the latest version of a lineage can change: later versions read through to their parent's items
+  private void requireEditable(Quotation q) {
+    if (!"DRAFT".equalsIgnoreCase(q.getStatus())) {
+      throw new IllegalStateException("Cannot modify a non-draft quotation");
     }
-    Quotation q = quotationRepository.findById(quoteId).orElseThrow();
-    q.setTotalPrice(total);
-    quotationRepository.save(q);
+    if (quotationRepository.existsByParentId(q.getId())) {
+      throw new IllegalStateException("Cannot modify quotation version " + q.getVersionNo() + ": it has later versions");
+    }
+  }
 
-    QuoteTotal out = new QuoteTotal();
-    out.setQuoteId(quoteId);
-    out.setTotalPrice(total);
-    return out;
+  private QuoteItem effectiveItem(Quotation q, Long itemId) {
+    QuoteItem item = quoteItemRepository.findById(itemId).orElseThrow();
+    if (!item.getQuotation().getId().equals(q.getId())
+        && !quoteItemRepository.isEffective(quotationRepository.findLineageIds(q.getId()), itemId)) {
+      throw new NoSuchElementException("Item " + itemId + " is not part of quotation " + q.getId());
+    }
+    return item;
   }
 
-  @Transactional
-  public Quotation submit(Long quoteId) {
-    Quotation q = quotationRepository.findById(quoteId).orElseThrow();
-    q.setStatus("SUBMITTED");
-    return quotationRepository.save(q);
+  // Copy of an inherited item owned by {@code q}, replacing the original in q and its later versions
+  static QuoteItem overrideOf(Quotation q, QuoteItem inherited) {
+    QuoteItem item = new QuoteItem();
+    item.setQuotation(q);
+    item.setArea(inherited.getArea());
+    item.setProduct(inherited.getProduct());
+    item.setQuantity(inherited.getQuantity());
+    item.setHeight(inherited.getHeight());
+    item.setWidth(inherited.getWidth());
+    item.setDepth(inherited.getDepth());
+    item.setNotes(inherited.getNotes());
+    item.setComputedPricePaise(inherited.getComputedPricePaise());
+    item.setRateCardVersion(inherited.getRateCardVersion());
+    item.setTemplateParams(new HashMap<>(inherited.getTemplateParams()));
+    item.setSourceItemId(inherited.getId());
+    return item;
+  }
+
+  // Price the item against one rate card and record which; returns the price in paise
+  private long applyPrice(QuoteItem item, RateCard rateCard) {
+    PricingService.Price price = pricingService.price(rateCard, item.getProduct().getId(), PricingService.Measure.of(
+        item.getQuantity(), item.getHeight(), item.getWidth(), item.getDepth(), item.getTemplateParams()));
+    item.setComputedPricePaise(price.paise());
+    item.setRateCardVersion(price.rateCardVersion());
+    return price.paise();
   }
 
+  private void applyDelta(Quotation q, long delta) {
+    q.setTotalPricePaise(q.getTotalPricePaise() + delta);
+    quotationRepository.save(q);
+  }
+
+  /**
+   * Run {@code work} in a transaction, retrying on an optimistic-lock conflict.
+   * Inside an outer transaction it simply joins it; the outer caller sees any conflict.
+   */
+  private <T> T retryOnConflict(Supplier<T> work) {
+    for (int attempt = 1; ; attempt++) {
+      try {
+        return tx.execute(status -> work.get());
+      } catch (OptimisticLockingFailureException e) {
+        if (attempt >= MAX_ATTEMPTS) throw e;
+        try {
+          Thread.sleep(ThreadLocalRandom.current().nextLong(5L * attempt, 20L * attempt)); // jittered backoff
+        } catch (InterruptedException ie) {
+          Thread.currentThread().interrupt();
+          throw e;
+        }
+      }
+    }
+  }
+
+  // New DRAFT version revised from the latest one. It shares the latest version's items instead of copying
+  // them (see listItems) and starts with its total; the cutlist rows can optionally be copied along,
+  // in one INSERT ... SELECT. Items and their params are no longer copied at all, so no item copy remains.
   @Transactional
-  public Quotation duplicateLatest(Long projectId) {
+  public Quotation duplicateLatest(Long projectId, boolean withCutlist) {
     List<Quotation> list = quotationRepository.findByProject_IdOrderByVersionNoDesc(projectId);
     Quotation base = list.isEmpty() ? null : list.get(0);
-    Quotation draft = loadOrCreateDraft(projectId);
-    // If draft already exists, clone latest submitted/draft into new version:
     Project project = projectRepository.findById(projectId).orElseThrow();
 
     long nextVersion = (base == null || base.getVersionNo() == null) ? 1 : base.getVersionNo() + 1;
@@ -167,53 +402,99 @@ public class QuotationService {
     copy.setStatus("DRAFT");
     copy.setCurrency("INR");
     copy.setNotes(base == null ? null : base.getNotes());
-    copy.setTotalPrice(0.0);
-    copy = quotationRepository.save(copy);
-
-    if (base != null) {
-      List<QuoteItem> items = quoteItemRepository.findByQuotation_Id(base.getId());
-      for (QuoteItem it : items) {
-        QuoteItem ni = new QuoteItem();
-        ni.setQuotation(copy);
-        ni.setArea(it.getArea());
-        ni.setProduct(it.getProduct());
-        ni.setQuantity(it.getQuantity());
-        ni.setHeight(it.getHeight());
-        ni.setWidth(it.getWidth());
-        ni.setDepth(it.getDepth());
-        ni.setNotes(it.getNotes());
-        ni.setComputedPrice(it.getComputedPrice());
-        ni.setTemplateParamsJson(it.getTemplateParamsJson());  // Copy template params
-        quoteItemRepository.save(ni);
+    copy.setTotalPricePaise(base == null ? 0 : base.getTotalPricePaise());
+    copy.setParentId(base == null ? null : base.getId());
+    copy = quotationRepository.saveAndFlush(copy);
+
+    if (base != null && withCutlist) {
+      FrozenQuote snapshot = snapshotService.find(base.getId());
+      if (snapshot == null) {
+        cutlistItemRepository.copyForQuotation(base.getId(), copy.getId());
+      } else {
+        // Submitted base: its rows live in the snapshot
+        List<CutlistItem> rows = new ArrayList<>(snapshot.cutlist().size());
+        for (CutlistItem frozen : snapshot.cutlist()) {
+          CutlistItem ci = new CutlistItem();
+          ci.setQuotation(copy);
+          ci.setQuoteItem(quoteItemRepository.getReferenceById(frozen.getQuoteItem().getId()));
+          ci.setPartName(frozen.getPartName());
+          ci.setPartType(frozen.getPartType());
+          ci.setCutHeight(frozen.getCutHeight());
+          ci.setCutWidth(frozen.getCutWidth());
+          ci.setThickness(frozen.getThickness());
+          ci.setQuantity(frozen.getQuantity());
+          ci.setMaterialType(frozen.getMaterialType());
+          ci.setEdgeBanding(frozen.getEdgeBanding());
+          ci.setGrainDirection(frozen.getGrainDirection());
+          ci.setSourceFingerprint(frozen.getSourceFingerprint());
+          rows.add(ci);
+        }
+        cutlistItemRepository.saveAll(rows);
       }
-      recalcTotal(copy.getId());
     }
     return copy;
   }
 
-  // Step 5: Cutlist generation with template engine support
-  @Transactional
-  public List<CutlistItem> generateCutlist(Long quoteId) {
-    Quotation q = quotationRepository.findById(quoteId).orElseThrow();
-    cutlistItemRepository.deleteByQuotation_Id(quoteId);
+  /** Progress of one cutlist generation, in quote items: unchanged items count as processed up front. */
+  public interface CutlistProgress {
+    void update(int processed, int total);
 
-    List<QuoteItem> items = quoteItemRepository.findByQuotation_Id(quoteId);
-    List<CutlistItem> out = new ArrayList<>();
+    /** Checked between items; once true, generation stops and nothing is written. */
+    default boolean cancelled() {
+      return false;
+    }
+  }
 
-    for (QuoteItem it : items) {
-      // Try template engine first
-      List<CutlistItem> templateItems = templateEngineService.generateCutlistForQuoteItem(it);
+  private record CutlistPlan(Quotation quotation, List<QuoteItem> items, Map<Long, List<CutlistItem>> existing,
+                             List<QuoteItem> stale, Set<Long> obsolete, Map<Long, String> fingerprints) {
+  }
 
-      if (!templateItems.isEmpty()) {
+  public List<CutlistItem> generateCutlist(Long quoteId) {
+    return generateCutlist(quoteId, (processed, total) -> { });
+  }
+
+  // Step 5: Cutlist generation with template engine support.
+  // Only items whose fingerprint changed since their rows were generated are re-evaluated (in parallel);
+  // their rows are then replaced in one batched write, and only if no item failed.
+  // No transaction is held while evaluating: items are read in one short transaction and rows written in another.
+  public List<CutlistItem> generateCutlist(Long quoteId, CutlistProgress progress) {
+    FrozenQuote snapshot = snapshotService.find(quoteId);
+    if (snapshot != null) {
+      // Submitted: nothing can change
+      progress.update(snapshot.items().size(), snapshot.items().size());
+      return snapshot.cutlist();
+    }
+    CutlistPlan plan = readTx.execute(status -> planCutlist(quoteId));
+    int total = plan.items().size();
+    int unchanged = total - plan.stale().size();
+    progress.update(unchanged, total);
+
+    List<TemplateEngineService.ItemResult> results = templateEngineService.generateCutlists(plan.stale(),
+        progress::cancelled, done -> progress.update(unchanged + done, total));
+
+    List<String> failures = new ArrayList<>();
+    for (TemplateEngineService.ItemResult r : results) {
+      if (r.failed()) {
+        failures.add("item " + r.item().getId() + ": " + r.error().getMessage());
+      }
+    }
+    if (!failures.isEmpty()) {
+      throw new TemplateEngineService.TemplateEngineException(
+          "Cutlist generation failed for " + failures.size() + " of " + plan.stale().size() + " changed items; "
+              + String.join("; ", failures));
+    }
+
+    Map<Long, List<CutlistItem>> existing = plan.existing();
+    List<CutlistItem> fresh = new ArrayList<>();
+    for (TemplateEngineService.ItemResult r : results) {
+      QuoteItem it = r.item();
+      List<CutlistItem> rows = new ArrayList<>();
+      if (!r.cutlist().isEmpty()) {
         // Template-based generation successful
-        for (CutlistItem ci : templateItems) {
-          ci.setQuotation(q);
-          out.add(cutlistItemRepository.save(ci));
-        }
+        rows.addAll(r.cutlist());
       } else {
         // Fallback: simple 1:1 mapping (legacy behavior)
         CutlistItem ci = new CutlistItem();
-        ci.setQuotation(q);
         ci.setQuoteItem(it);
         ci.setPartName(it.getProduct().getName());
         ci.setPartType("GENERIC");
@@ -221,20 +502,84 @@ public class QuotationService {
         ci.setCutWidth(it.getWidth());
         ci.setThickness(it.getDepth()); // using depth as thickness placeholder
         ci.setQuantity(it.getQuantity() == null ? 1 : it.getQuantity());
-        out.add(cutlistItemRepository.save(ci));
+        rows.add(ci);
       }
+      for (CutlistItem ci : rows) {
+        ci.setQuotation(plan.quotation());
+        ci.setSourceFingerprint(plan.fingerprints().get(it.getId()));
+      }
+      fresh.addAll(rows);
+      existing.put(it.getId(), rows);
+    }
+    if (progress.cancelled()) {
+      throw new CancellationException("Cutlist generation cancelled");
+    }
+
+    Set<Long> live;
+    if (!plan.stale().isEmpty() || !plan.obsolete().isEmpty()) {
+      Set<Long> replaced = new HashSet<>(plan.obsolete());
+      plan.stale().forEach(it -> replaced.add(it.getId()));
+      live = tx.execute(status -> {
+        // Concurrent generations of one quotation write one after the other, so rows are never duplicated
+        quotationRepository.lockById(quoteId);
+        // Items deleted while evaluating get no rows
+        Set<Long> ids = new HashSet<>(quoteItemRepository.findEffectiveIds(quotationRepository.findLineageIds(quoteId)));
+        fresh.removeIf(ci -> !ids.contains(ci.getQuoteItem().getId()));
+        cutlistItemRepository.deleteAllByQuoteItemIds(quoteId, replaced);
+        cutlistItemRepository.saveAll(fresh);
+        return ids;
+      });
+    } else {
+      live = existing.keySet();
+    }
+
+    // Whole cutlist in item order, unchanged rows included
+    List<CutlistItem> out = new ArrayList<>();
+    for (QuoteItem it : plan.items()) {
+      if (live.contains(it.getId())) out.addAll(existing.get(it.getId()));
     }
     return out;
   }
 
+  private CutlistPlan planCutlist(Long quoteId) {
+    Quotation q = quotationRepository.findById(quoteId).orElseThrow();
+    List<QuoteItem> items = quoteItemRepository.findEffectiveWithProducts(quotationRepository.findLineageIds(quoteId));
+
+    Map<Long, List<CutlistItem>> existing = new HashMap<>();
+    for (CutlistItem ci : cutlistItemRepository.findByQuotation_Id(quoteId)) {
+      existing.computeIfAbsent(ci.getQuoteItem().getId(), k -> new ArrayList<>()).add(ci);
+    }
+
+    // Rows of items that are no longer part of this version
+    Set<Long> obsolete = new HashSet<>(existing.keySet());
+    List<QuoteItem> stale = new ArrayList<>();
+    Map<Long, String> fingerprints = new HashMap<>();
+    for (QuoteItem it : items) {
+      obsolete.remove(it.getId());
+      String fp = templateEngineService.fingerprint(it);
+      fingerprints.put(it.getId(), fp);
+      List<CutlistItem> rows = existing.get(it.getId());
+      if (rows == null || !rows.stream().allMatch(ci -> fp.equals(ci.getSourceFingerprint()))) {
+        stale.add(it);
+      }
+    }
+    return new CutlistPlan(q, items, existing, stale, obsolete, fingerprints);
+  }
+
   public List<CutlistItem> listCutlist(Long quoteId) {
+    FrozenQuote snapshot = snapshotService.find(quoteId);
+    if (snapshot != null) return snapshot.cutlist();
     return cutlistItemRepository.findByQuotation_Id(quoteId);
   }
 
   // Step 6: Material usage summary (8x4 sheet, mm) - grouped by material type and thickness
   public MaterialSummary materialSummary(Long quoteId) {
-    double sheetArea = 2440.0 * 1220.0; // mm²
-    List<CutlistItem> items = listCutlist(quoteId);
+    FrozenQuote snapshot = snapshotService.find(quoteId);
+    if (snapshot != null) return snapshot.materialSummary();
+    return materialSummary(quoteId, cutlistItemRepository.findByQuotation_Id(quoteId));
+  }
+
+  private static MaterialSummary materialSummary(Long quoteId, List<CutlistItem> items) {
 
     double total = 0.0;
     for (CutlistItem i : items) {
@@ -243,16 +588,23 @@ public class QuotationService {
       }
     }
 
-    int sheets = (int) Math.ceil(total / sheetArea);
+    MaterialSummary ms = estimateSheets(total);
+    ms.setQuoteId(quoteId);
+    return ms;
+  }
+
+  // Sheets needed for a total part area (8x4 sheet, mm), ignoring nesting
+  public static MaterialSummary estimateSheets(double totalPartAreaMm2) {
+    double sheetArea = 2440.0 * 1220.0; // mm²
+    int sheets = (int) Math.ceil(totalPartAreaMm2 / sheetArea);
     double wastage = 0.0;
     if (sheets > 0) {
       double usedSheetArea = sheets * sheetArea;
-      wastage = ((usedSheetArea - total) / usedSheetArea) * 100.0;
+      wastage = ((usedSheetArea - totalPartAreaMm2) / usedSheetArea) * 100.0;
     }
 
     MaterialSummary ms = new MaterialSummary();
-    ms.setQuoteId(quoteId);
-    ms.setTotalPartAreaMm2(total);
+    ms.setTotalPartAreaMm2(totalPartAreaMm2);
     ms.setSheetAreaMm2(sheetArea);
     ms.setSheetCount(sheets);
     ms.setWastagePercent(wastage);
@@ -0,0 +1,146 @@
+package com.interior.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.interior.dto.MaterialSummary;
+import com.interior.dto.QuoteSnapshot;
+import com.interior.model.CutlistItem;
+import com.interior.model.QuotationSnapshot;
+import com.interior.model.QuoteItem;
+import com.interior.model.Quotation;
+import com.interior.repository.QuotationSnapshotRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Stores and reads the frozen documents of submitted quotations. A snapshot never changes once
+ * written, so decoded documents are cached per node and a warm read runs no queries.
+ */
+@Service
+public class QuotationSnapshotService {
+
+  private final QuotationSnapshotRepository repository;
+  private final ObjectMapper objectMapper;
+  private final LruCache<Long, FrozenQuote> decoded;
+
+  public QuotationSnapshotService(QuotationSnapshotRepository repository,
+                                  ObjectMapper objectMapper,
+                                  @Value("${interior.snapshot-cache.max-size:64}") int cacheSize) {
+    this.repository = repository;
+    this.objectMapper = objectMapper;
+    this.decoded = new LruCache<>(cacheSize);
+  }
+
+  /** Write the snapshot of a quotation; joins the caller's transaction. */
+  public QuotationSnapshot store(Quotation quotation, List<QuoteItem> items, List<CutlistItem> cutlist,
+                                 MaterialSummary materialSummary) {
+    QuoteSnapshot doc = new QuoteSnapshot();
+    doc.setQuotation(quotation);
+    doc.setItems(items);
+    doc.setCutlist(cutlist.stream().map(QuotationSnapshotService::part).toList());
+    doc.setMaterialSummary(materialSummary);
+    doc.setFrozenAt(Instant.now());
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    int jsonBytes;
+    try (GZIPOutputStream gzip = new GZIPOutputStream(bytes)) {
+      byte[] json = objectMapper.writeValueAsBytes(doc);
+      jsonBytes = json.length;
+      gzip.write(json);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+
+    QuotationSnapshot snapshot = new QuotationSnapshot();
+    snapshot.setQuotationId(quotation.getId());
+    snapshot.setVersionNo(quotation.getVersionNo());
+    snapshot.setItemCount(items.size());
+    snapshot.setCutlistRows(cutlist.size());
+    snapshot.setTotalPricePaise(quotation.getTotalPricePaise());
+    snapshot.setJsonBytes(jsonBytes);
+    snapshot.setDocument(bytes.toByteArray());
+    return repository.save(snapshot);
+  }
+
+  /** The frozen quotation, or null if it has none (drafts, quotes submitted before snapshots existed). */
+  public FrozenQuote find(Long quoteId) {
+    FrozenQuote cached = decoded.get(quoteId);
+    if (cached != null) return cached;
+    QuotationSnapshot snapshot = repository.findByQuotationId(quoteId).orElse(null);
+    if (snapshot == null) return null;
+    FrozenQuote frozen = thaw(decode(snapshot.getDocument()));
+    decoded.put(quoteId, frozen);
+    return frozen;
+  }
+
+  /** Compressed JSON as stored, for exports. */
+  public byte[] findCompressed(Long quoteId) {
+    return repository.findByQuotationId(quoteId).map(QuotationSnapshot::getDocument).orElse(null);
+  }
+
+  // Rebuild cutlist rows around the document's own item and quotation instances
+  private static FrozenQuote thaw(QuoteSnapshot doc) {
+    Map<Long, QuoteItem> items = new HashMap<>();
+    for (QuoteItem item : doc.getItems()) items.put(item.getId(), item);
+    List<CutlistItem> cutlist = new ArrayList<>(doc.getCutlist().size());
+    for (QuoteSnapshot.Part p : doc.getCutlist()) {
+      CutlistItem ci = new CutlistItem();
+      ci.setId(p.getId());
+      ci.setCreatedAt(p.getCreatedAt());
+      ci.setUpdatedAt(p.getUpdatedAt());
+      ci.setQuotation(doc.getQuotation());
+      ci.setQuoteItem(items.get(p.getQuoteItemId()));
+      ci.setPartName(p.getPartName());
+      ci.setPartType(p.getPartType());
+      ci.setCutHeight(p.getCutHeight());
+      ci.setCutWidth(p.getCutWidth());
+      ci.setThickness(p.getThickness());
+      ci.setQuantity(p.getQuantity());
+      ci.setMaterialType(p.getMaterialType());
+      ci.setEdgeBanding(p.getEdgeBanding());
+      ci.setGrainDirection(p.getGrainDirection());
+      ci.setSourceFingerprint(p.getSourceFingerprint());
+      cutlist.add(ci);
+    }
+    return new FrozenQuote(doc.getQuotation(), List.copyOf(doc.getItems()), List.copyOf(cutlist), doc.getMaterialSummary());
+  }
+
+  private static QuoteSnapshot.Part part(CutlistItem ci) {
+    QuoteSnapshot.Part p = new QuoteSnapshot.Part();
+    p.setId(ci.getId());
+    p.setCreatedAt(ci.getCreatedAt());
+    p.setUpdatedAt(ci.getUpdatedAt());
+    p.setQuoteItemId(ci.getQuoteItem().getId());
+    p.setPartName(ci.getPartName());
+    p.setPartType(ci.getPartType());
+    p.setCutHeight(ci.getCutHeight());
+    p.setCutWidth(ci.getCutWidth());
+    p.setThickness(ci.getThickness());
+    p.setQuantity(ci.getQuantity());
+    p.setMaterialType(ci.getMaterialType());
+    p.setEdgeBanding(ci.getEdgeBanding());
+    p.setGrainDirection(ci.getGrainDirection());
+    p.setSourceFingerprint(ci.getSourceFingerprint());
+    return p;
+  }
+
+  private QuoteSnapshot decode(byte[] document) {
+    try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(document))) {
+      return objectMapper.readValue(in, QuoteSnapshot.class);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+}
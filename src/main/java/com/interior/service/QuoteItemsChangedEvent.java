@@ -0,0 +1,5 @@
+package com.interior.service;
+
+/** Published by {@link QuotationService} when a quotation's items were added, changed or removed. */
+public record QuoteItemsChangedEvent(Long quoteId) {
+}
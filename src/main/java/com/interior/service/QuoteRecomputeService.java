@@ -0,0 +1,176 @@
+package com.interior.service;
+
+import com.interior.dto.MaterialSummary;
+import com.interior.dto.QuoteDerived;
+import com.interior.dto.QuoteTotal;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Recomputes a quotation's derived data - reconciled total, cutlist and material summary - after its
+ * items change. Change events for a quotation are coalesced: a recompute starts once no event has
+ * arrived for {@code debounce-ms}, or at the latest {@code max-wait-ms} after the first event of a burst.
+ * At most one recompute per quotation runs at a time; events arriving meanwhile schedule one more.
+ */
+@Service
+public class QuoteRecomputeService {
+
+  private static final Logger log = LoggerFactory.getLogger(QuoteRecomputeService.class);
+
+  private final QuotationService quotationService;
+  private final boolean enabled;
+  private final long debounceMs;
+  private final long maxWaitMs;
+  private final ScheduledExecutorService timers;
+  private final ExecutorService workers;
+  private final Map<Long, Burst> bursts = new HashMap<>();   // guarded by this
+  // Last result per quotation; evicted ones read as never computed
+  private final LruCache<Long, QuoteDerived> latest;
+
+  public QuoteRecomputeService(QuotationService quotationService,
+                               @Value("${interior.recompute.enabled:true}") boolean enabled,
+                               @Value("${interior.recompute.debounce-ms:500}") long debounceMs,
+                               @Value("${interior.recompute.max-wait-ms:5000}") long maxWaitMs,
+                               @Value("${interior.recompute.workers:2}") int workers,
+                               @Value("${interior.recompute.results-max-size:1000}") int resultsMaxSize) {
+    this.quotationService = quotationService;
+    this.enabled = enabled;
+    this.debounceMs = debounceMs;
+    this.maxWaitMs = maxWaitMs;
+    this.latest = new LruCache<>(resultsMaxSize);
+    this.timers = Executors.newSingleThreadScheduledExecutor(r -> new Thread(r, "quote-recompute-timer"));
+    AtomicInteger threads = new AtomicInteger();
+    this.workers = Executors.newFixedThreadPool(workers, r -> new Thread(r, "quote-recompute-" + threads.incrementAndGet()));
+  }
+
+  @PreDestroy
+  void shutdown() {
+    timers.shutdownNow();
+    workers.shutdownNow();
+  }
+
+  /** Pending changes of one quotation. */
+  private static final class Burst {
+    long firstEventAt;
+    ScheduledFuture<?> timer;
+    boolean running;
+    boolean dirty;     // events arrived while running
+
+    Burst(long firstEventAt) {
+      this.firstEventAt = firstEventAt;
+    }
+  }
+
+  // After commit only: a rolled-back (e.g. retried) edit changed nothing
+  @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+  public void onItemsChanged(QuoteItemsChangedEvent event) {
+    if (enabled) schedule(event.quoteId());
+  }
+
+  public QuoteDerived get(Long quoteId) {
+    QuoteDerived out = new QuoteDerived();
+    QuoteDerived last = latest.get(quoteId);
+    if (last != null) {
+      out.setComputedAt(last.getComputedAt());
+      out.setTotalPricePaise(last.getTotalPricePaise());
+      out.setTotalDriftPaise(last.getTotalDriftPaise());
+      out.setCutlistRows(last.getCutlistRows());
+      out.setMaterialSummary(last.getMaterialSummary());
+      out.setError(last.getError());
+    }
+    out.setQuoteId(quoteId);
+    synchronized (this) {
+      out.setPending(bursts.containsKey(quoteId));
+    }
+    return out;
+  }
+
+  private synchronized void schedule(Long quoteId) {
+    long now = System.currentTimeMillis();
+    Burst burst = bursts.computeIfAbsent(quoteId, k -> new Burst(now));
+    if (burst.running) {
+      burst.dirty = true;
+      return;
+    }
+    if (burst.timer != null) burst.timer.cancel(false);
+    long delay = Math.min(debounceMs, Math.max(0, burst.firstEventAt + maxWaitMs - now));
+    burst.timer = timers.schedule(() -> start(quoteId), delay, TimeUnit.MILLISECONDS);
+  }
+
+  private synchronized void start(Long quoteId) {
+    Burst burst = bursts.get(quoteId);
+    if (burst == null || burst.running) return;
+    burst.running = true;
+    burst.timer = null;
+    try {
+      workers.execute(() -> run(quoteId));
+    } catch (RejectedExecutionException e) {
+      // Shutting down: drop the burst so the quotation is not left marked as running
+      bursts.remove(quoteId);
+    }
+  }
+
+  private void run(Long quoteId) {
+    try {
+      latest.put(quoteId, recompute(quoteId));
+    } finally {
+      // Also after an Error: a burst left running would make every later edit only mark it dirty
+      finished(quoteId);
+    }
+  }
+
+  private QuoteDerived recompute(Long quoteId) {
+    QuoteDerived out = new QuoteDerived();
+    out.setQuoteId(quoteId);
+    try {
+      QuoteTotal total = quotationService.recalcTotal(quoteId);
+      int rows = quotationService.generateCutlist(quoteId).size();
+      MaterialSummary summary = quotationService.materialSummary(quoteId);
+      out.setTotalPricePaise(total.getTotalPricePaise());
+      out.setTotalDriftPaise(total.getDriftPaise());
+      out.setCutlistRows(rows);
+      out.setMaterialSummary(summary);
+      log.debug("Recomputed quotation {}: total {}, {} cutlist rows", quoteId, total.getTotalPrice(), rows);
+    } catch (RuntimeException e) {
+      log.warn("Recompute of quotation {} failed: {}", quoteId, e.toString());
+      QuoteDerived last = latest.get(quoteId);
+      if (last != null) {
+        out.setTotalPricePaise(last.getTotalPricePaise());
+        out.setTotalDriftPaise(last.getTotalDriftPaise());
+        out.setCutlistRows(last.getCutlistRows());
+        out.setMaterialSummary(last.getMaterialSummary());
+      }
+      out.setError(String.valueOf(e.getMessage()));
+    }
+    out.setComputedAt(Instant.now());
+    return out;
+  }
+
+  private synchronized void finished(Long quoteId) {
+    Burst burst = bursts.get(quoteId);
+    if (burst == null) return;
+    burst.running = false;
+    if (burst.dirty) {
+      burst.dirty = false;
+      burst.firstEventAt = System.currentTimeMillis();
+      try {
+        burst.timer = timers.schedule(() -> start(quoteId), debounceMs, TimeUnit.MILLISECONDS);
+      } catch (RejectedExecutionException e) {
+        bursts.remove(quoteId);
+      }
+    } else {
+      bursts.remove(quoteId);
+    }
+  }
+}
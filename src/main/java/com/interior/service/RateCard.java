@@ -0,0 +1,60 @@
+package com.interior.service;
+
+import com.interior.model.ProductTemplate;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Immutable pricing inputs of every product, as of one load. {@link PricingService} swaps in a new
+ * card whenever products change; prices record the {@link #getVersion() version} they were computed with.
+ */
+public final class RateCard {
+
+  /** One product's rate with its strategy already resolved. */
+  public record Rate(Long productId, PricingStrategy strategy, double unitRate, ProductTemplate template) {
+  }
+
+  private final long version;
+  private final Instant loadedAt;
+  private final Map<Long, Rate> rates;
+
+  RateCard(long version, Instant loadedAt, Map<Long, Rate> rates) {
+    this.version = version;
+    this.loadedAt = loadedAt;
+    this.rates = Map.copyOf(rates);
+  }
+
+  public long getVersion() {
+    return version;
+  }
+
+  public Instant getLoadedAt() {
+    return loadedAt;
+  }
+
+  public int size() {
+    return rates.size();
+  }
+
+  public boolean contains(Long productId) {
+    return rates.containsKey(productId);
+  }
+
+  /** Products whose price depends on the parts of one of these templates. */
+  public List<Long> pricedFromTemplates(Collection<Long> templateIds) {
+    return rates.values().stream()
+        .filter(r -> r.template() != null && templateIds.contains(r.template().getId()) && r.strategy().usesTemplateParams())
+        .map(Rate::productId)
+        .toList();
+  }
+
+  public Rate rate(Long productId) {
+    Rate rate = rates.get(productId);
+    if (rate == null) throw new NoSuchElementException("Product " + productId + " is not on rate card " + version);
+    return rate;
+  }
+}
@@ -0,0 +1,426 @@
+package com.interior.service;
+
+import com.interior.dto.QuoteTotal;
+import com.interior.dto.RepricingJobStatus;
+import com.interior.model.QuoteItem;
+import com.interior.model.Quotation;
+import com.interior.repository.QuotationRepository;
+import com.interior.repository.QuoteItemRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Re-prices the items of DRAFT quotations after a product's rate or pricing model changed, or the
+ * rules of the template a per-sheet product is priced from.
+ *
+ * <p>Items owned by drafts are read in keyset-paginated batches (id order) with plain JDBC, priced
+ * against the current {@link RateCard} and written back with one JDBC batch update per page, so memory
+ * stays bounded by the batch size. Each write is conditional on the price read, so a concurrent item
+ * edit (which already prices with the new rate) wins.
+ *
+ * <p>Items of submitted quotations are frozen. A draft revised from a submitted version gets an
+ * overriding copy (see {@link QuotationService#overrideOf}) of each inherited item whose price changes,
+ * paged the same way over the draft's effective items; drafts revised from it inherit the overrides.
+ *
+ * <p>Totals of the affected quotations, and of draft versions inheriting their items, are then
+ * re-summed with {@link QuotationService#recalcTotal}.
+ *
+ * <p>Jobs run one at a time. Submitting while a job is still queued adds the products to it.
+ */
+@Service
+public class RepricingJobService {
+
+  private static final Logger log = LoggerFactory.getLogger(RepricingJobService.class);
+
+  public static final String QUEUED = "QUEUED", RUNNING = "RUNNING", SUCCEEDED = "SUCCEEDED",
+      FAILED = "FAILED", CANCELLED = "CANCELLED";
+
+  private static final String PAGE = "select i.id, i.quotation_id, i.product_id, i.quantity, i.height, i.width, i.depth,"
+      + " i.computed_price_paise from quote_item i join quotation q on q.id = i.quotation_id"
+      + " where q.status = 'DRAFT' and i.product_id in (:productIds) and i.id > :afterId order by i.id limit :limit";
+
+  private static final String PARAMS = "select quote_item_id, param_name, param_value from quote_item_param"
+      + " where quote_item_id in (:itemIds)";
+
+  private static final String REPOINT_CUTLIST = "update cutlist_item set quote_item_id = ?"
+      + " where quotation_id = ? and quote_item_id = ?";
+
+  private static final int MAX_ATTEMPTS = 8;
+  private static final int MAX_REPORTED_FAILURES = 20;
+
+  private static final String REPRICE = "update quote_item set computed_price_paise = ?, rate_card_version = ?"
+      + " where id = ? and computed_price_paise = ?"
+      + " and exists (select 1 from quotation q where q.id = quote_item.quotation_id and q.status = 'DRAFT')";
+
+  private final NamedParameterJdbcTemplate jdbc;
+  private final QuotationRepository quotationRepository;
+  private final QuoteItemRepository quoteItemRepository;
+  private final QuotationService quotationService;
+  private final PricingService pricingService;
+  private final ApplicationEventPublisher events;
+  private final TransactionTemplate tx;
+  private final ThreadPoolExecutor executor;
+  private final int batchSize;
+  private final Duration retention;
+  private final Map<String, Job> jobs = new ConcurrentHashMap<>();
+  private Job queued;  // guarded by this
+
+  public RepricingJobService(NamedParameterJdbcTemplate jdbc,
+                             QuotationRepository quotationRepository,
+                             QuoteItemRepository quoteItemRepository,
+                             QuotationService quotationService,
+                             PricingService pricingService,
+                             ApplicationEventPublisher events,
+                             PlatformTransactionManager transactionManager,
+                             @Value("${interior.repricing.batch-size:1000}") int batchSize,
+                             @Value("${interior.repricing.queue-capacity:100}") int queueCapacity,
+                             @Value("${interior.repricing.retention-minutes:60}") long retentionMinutes) {
+    this.jdbc = jdbc;
+    this.quotationRepository = quotationRepository;
+    this.quoteItemRepository = quoteItemRepository;
+    this.quotationService = quotationService;
+    this.pricingService = pricingService;
+    this.events = events;
+    this.tx = new TransactionTemplate(transactionManager);
+    this.batchSize = batchSize;
+    this.executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+        new ArrayBlockingQueue<>(queueCapacity), r -> new Thread(r, "repricing-job"));
+    this.retention = Duration.ofMinutes(retentionMinutes);
+  }
+
+  @PreDestroy
+  void shutdown() {
+    executor.shutdownNow();
+  }
+
+  private static final class Job {
+    final String id = UUID.randomUUID().toString();
+    final Set<Long> productIds = ConcurrentHashMap.newKeySet();
+    final Instant submittedAt = Instant.now();
+    volatile String status = QUEUED;
+    volatile long scanned;
+    volatile long repriced;
+    volatile long totalDelta;
+    final Set<Long> failedItemIds = ConcurrentHashMap.newKeySet();  // a page re-read after a conflict fails again
+    final List<String> failures = Collections.synchronizedList(new ArrayList<>());
+    volatile List<QuoteTotal> quotations = List.of();
+    volatile boolean cancelRequested;
+    volatile String error;
+    volatile Instant startedAt;
+    volatile Instant finishedAt;
+    volatile Future<?> future;
+
+    RepricingJobStatus snapshot() {
+      RepricingJobStatus s = new RepricingJobStatus();
+      s.setJobId(id);
+      s.setProductIds(new TreeSet<>(productIds));
+      s.setStatus(status);
+      s.setScannedItems(scanned);
+      s.setRepricedItems(repriced);
+      s.setTotalDeltaPaise(totalDelta);
+      s.setFailedItems(failedItemIds.size());
+      synchronized (failures) {
+        s.setFailures(new ArrayList<>(failures));
+      }
+      s.setQuotations(quotations);
+      s.setError(error);
+      s.setSubmittedAt(submittedAt);
+      s.setStartedAt(startedAt);
+      s.setFinishedAt(finishedAt);
+      return s;
+    }
+  }
+
+  private record Row(long id, long quoteId, long productId, Integer quantity, Double height, Double width,
+                     Double depth, long pricePaise) {
+  }
+
+  private record Repriced(Row row, long pricePaise) {
+  }
+
+  /**
+   * New template rules change the parts, and so the price, of products priced per sheet: load a card
+   * holding the new template versions and reprice those products' draft items.
+   */
+  @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+  public void onTemplatesChanged(TemplatesChangedEvent event) {
+    List<Long> productIds = pricingService.reload().pricedFromTemplates(event.templateIds());
+    if (productIds.isEmpty()) return;
+    try {
+      submit(productIds);
+    } catch (RejectedExecutionException e) {
+      // queue full: drafts can be repriced later through POST /api/products/reprice
+      log.warn("Repricing after template change of {} not queued: {}", event.templateIds(), e.toString());
+    }
+  }
+
+  /**
+   * Queue a repricing of draft items of these products, or add them to the job that is still queued.
+   *
+   * @throws RejectedExecutionException if the job queue is full
+   */
+  public synchronized RepricingJobStatus submit(Collection<Long> productIds) {
+    purgeFinished();
+    if (queued != null && QUEUED.equals(queued.status)) {
+      queued.productIds.addAll(productIds);
+      return queued.snapshot();
+    }
+    Job job = new Job();
+    job.productIds.addAll(productIds);
+    jobs.put(job.id, job);
+    try {
+      job.future = executor.submit(() -> run(job));
+    } catch (RejectedExecutionException e) {
+      jobs.remove(job.id);
+      throw e;
+    }
+    queued = job;
+    return job.snapshot();
+  }
+
+  public RepricingJobStatus get(String jobId) {
+    return find(jobId).snapshot();
+  }
+
+  // Newest first
+  public List<RepricingJobStatus> list() {
+    return jobs.values().stream()
+        .sorted(Comparator.comparing((Job j) -> j.submittedAt).reversed())
+        .map(Job::snapshot)
+        .toList();
+  }
+
+  /**
+   * Cancel a job. A queued job never starts; a running one stops after its current batch and still
+   * updates the totals of the quotations it repriced so far.
+   */
+  public RepricingJobStatus cancel(String jobId) {
+    Job job = find(jobId);
+    synchronized (this) {
+      if (QUEUED.equals(job.status)) {
+        job.future.cancel(false);
+        finish(job, CANCELLED, null);
+      } else if (RUNNING.equals(job.status)) {
+        job.cancelRequested = true;
+      }
+    }
+    return job.snapshot();
+  }
+
+  private void run(Job job) {
+    synchronized (this) {
+      if (!QUEUED.equals(job.status)) return;
+      job.status = RUNNING;
+      job.startedAt = Instant.now();
+      if (queued == job) queued = null;
+    }
+    Map<Long, Long> deltaByQuote = new HashMap<>();
+    try {
+      // One card for the whole run; products deleted since the job was queued are skipped
+      RateCard card = pricingService.rateCard();
+      Set<Long> productIds = new TreeSet<>();
+      boolean needsParams = false;
+      for (Long id : job.productIds) {
+        if (!card.contains(id)) continue;
+        productIds.add(id);
+        needsParams |= card.rate(id).strategy().usesTemplateParams();
+      }
+
+      long afterId = 0;
+      while (!job.cancelRequested && !productIds.isEmpty()) {
+        List<Row> page = page(productIds, afterId);
+        if (page.isEmpty()) break;
+        afterId = page.get(page.size() - 1).id();
+        reprice(job, page, card, needsParams ? templateParams(page) : Map.of(), deltaByQuote);
+        job.scanned += page.size();
+      }
+      for (Long draftId : productIds.isEmpty() ? List.<Long>of() : quotationRepository.findDraftIdsRevisedFromFrozen()) {
+        if (job.cancelRequested) break;
+        overrideInherited(job, draftId, productIds, card, deltaByQuote);
+      }
+      job.quotations = updateTotals(deltaByQuote.keySet());
+      finish(job, job.cancelRequested ? CANCELLED : SUCCEEDED, null);
+      log.info("Repricing {} for products {}: {} of {} draft items changed, {} quotations updated",
+          job.id, job.productIds, job.repriced, job.scanned, job.quotations.size());
+    } catch (RuntimeException e) {
+      log.warn("Repricing {} failed: {}", job.id, e.toString());
+      try {
+        job.quotations = updateTotals(deltaByQuote.keySet()); // batches already committed stay consistent
+      } catch (RuntimeException ignored) {
+        // totals are left for the next recalc
+      }
+      finish(job, FAILED, String.valueOf(e.getMessage()));
+    }
+  }
+
+  private List<Row> page(Set<Long> productIds, long afterId) {
+    MapSqlParameterSource params = new MapSqlParameterSource()
+        .addValue("productIds", productIds)
+        .addValue("afterId", afterId)
+        .addValue("limit", batchSize);
+    return jdbc.query(PAGE, params, (rs, n) -> new Row(
+        rs.getLong("id"),
+        rs.getLong("quotation_id"),
+        rs.getLong("product_id"),
+        rs.getObject("quantity", Integer.class),
+        rs.getObject("height", Double.class),
+        rs.getObject("width", Double.class),
+        rs.getObject("depth", Double.class),
+        rs.getLong("computed_price_paise")));
+  }
+
+  private Map<Long, Map<String, Double>> templateParams(List<Row> page) {
+    Map<Long, Map<String, Double>> out = new HashMap<>();
+    MapSqlParameterSource params = new MapSqlParameterSource("itemIds", page.stream().map(Row::id).toList());
+    jdbc.query(PARAMS, params, rs -> {
+      out.computeIfAbsent(rs.getLong("quote_item_id"), k -> new HashMap<>())
+          .put(rs.getString("param_name"), rs.getDouble("param_value"));
+    });
+    return out;
+  }
+
+  // One transaction and one JDBC batch per page; only rows whose price changes are written
+  private void reprice(Job job, List<Row> page, RateCard card, Map<Long, Map<String, Double>> templateParams,
+                       Map<Long, Long> deltaByQuote) {
+    List<Repriced> changed = new ArrayList<>();
+    List<Object[]> args = new ArrayList<>();
+    for (Row r : page) {
+      PricingService.Price price = price(job, card, r.id(), r.productId(), PricingService.Measure.of(
+          r.quantity(), r.height(), r.width(), r.depth(), templateParams.get(r.id())));
+      if (price == null || price.paise() == r.pricePaise()) continue;
+      changed.add(new Repriced(r, price.paise()));
+      args.add(new Object[]{price.paise(), price.rateCardVersion(), r.id(), r.pricePaise()});
+    }
+    if (changed.isEmpty()) return;
+
+    int[] counts = tx.execute(status -> jdbc.getJdbcOperations().batchUpdate(REPRICE, args));
+    for (int k = 0; k < counts.length; k++) {
+      if (counts[k] == 0) continue; // edited or submitted meanwhile
+      Row r = changed.get(k).row();
+      long delta = changed.get(k).pricePaise() - r.pricePaise();
+      deltaByQuote.merge(r.quoteId(), delta, Long::sum);
+      job.totalDelta += delta;
+      job.repriced++;
+    }
+  }
+
+  // Null when the item cannot be priced (e.g. its template rejects its dimensions): it keeps its price and
+  // is reported, and the job goes on. Uncached, so a scan of old items does not evict live quote results.
+  private PricingService.Price price(Job job, RateCard card, long itemId, Long productId, PricingService.Measure measure) {
+    try {
+      return pricingService.price(card, productId, measure.withoutPartsCache());
+    } catch (RuntimeException e) {
+      if (job.failedItemIds.add(itemId) && job.failures.size() < MAX_REPORTED_FAILURES) {
+        job.failures.add("item " + itemId + ": " + e.getMessage());
+      }
+      return null;
+    }
+  }
+
+  private void overrideInherited(Job job, Long draftId, Set<Long> productIds, RateCard card,
+                                 Map<Long, Long> deltaByQuote) {
+    List<Long> lineage = quotationRepository.findLineageIds(draftId);
+    long afterId = 0;
+    int attempt = 0;
+    while (!job.cancelRequested) {
+      List<Long> page = quoteItemRepository.findEffectiveFrozenIds(lineage, productIds, afterId, PageRequest.of(0, batchSize));
+      if (page.isEmpty()) return;
+      try {
+        override(job, draftId, page, card, deltaByQuote);
+      } catch (OptimisticLockingFailureException e) {
+        // the draft was edited meanwhile: read the page again, without items overridden since
+        if (++attempt >= MAX_ATTEMPTS) throw e;
+        continue;
+      }
+      attempt = 0;
+      afterId = page.get(page.size() - 1);
+      job.scanned += page.size();
+    }
+  }
+
+  // One transaction per page: the overrides are inserted in JDBC batches, the draft's cutlist rows move to
+  // them (parts do not depend on the price) and the draft's total takes the delta under its optimistic lock
+  private void override(Job job, Long draftId, List<Long> itemIds, RateCard card, Map<Long, Long> deltaByQuote) {
+    long[] result = tx.execute(status -> {
+      Quotation draft = quotationRepository.findById(draftId).orElse(null);
+      if (draft == null || !"DRAFT".equalsIgnoreCase(draft.getStatus())) return new long[]{0, 0};
+
+      List<QuoteItem> overrides = new ArrayList<>();
+      long delta = 0;
+      for (QuoteItem inherited : quoteItemRepository.findAllById(itemIds)) {
+        PricingService.Price price = price(job, card, inherited.getId(), inherited.getProduct().getId(),
+            PricingService.Measure.of(inherited.getQuantity(), inherited.getHeight(), inherited.getWidth(),
+                inherited.getDepth(), inherited.getTemplateParams()));
+        if (price == null || price.paise() == inherited.getComputedPricePaise()) continue;
+        QuoteItem item = QuotationService.overrideOf(draft, inherited);
+        item.setComputedPricePaise(price.paise());
+        item.setRateCardVersion(price.rateCardVersion());
+        overrides.add(item);
+        delta += price.paise() - inherited.getComputedPricePaise();
+      }
+      if (overrides.isEmpty()) return new long[]{0, 0};
+
+      quoteItemRepository.saveAllAndFlush(overrides);
+      List<Object[]> args = new ArrayList<>(overrides.size());
+      for (QuoteItem item : overrides) args.add(new Object[]{item.getId(), draftId, item.getSourceItemId()});
+      jdbc.getJdbcOperations().batchUpdate(REPOINT_CUTLIST, args);
+      draft.setTotalPricePaise(draft.getTotalPricePaise() + delta);
+      quotationRepository.saveAndFlush(draft);
+      return new long[]{overrides.size(), delta};
+    });
+    if (result[0] == 0) return;
+    deltaByQuote.merge(draftId, result[1], Long::sum);
+    job.totalDelta += result[1];
+    job.repriced += result[0];
+  }
+
+  private List<QuoteTotal> updateTotals(Set<Long> quoteIds) {
+    if (quoteIds.isEmpty()) return List.of();
+    Set<Long> affected = new TreeSet<>(quoteIds);
+    affected.addAll(quotationRepository.findDraftDescendantIds(quoteIds));
+    List<QuoteTotal> out = new ArrayList<>(affected.size());
+    for (Long quoteId : affected) {
+      out.add(quotationService.recalcTotal(quoteId));
+      events.publishEvent(new QuoteItemsChangedEvent(quoteId));
+    }
+    return List.copyOf(out);
+  }
+
+  private void finish(Job job, String status, String error) {
+    synchronized (this) {
+      job.error = error;
+      job.finishedAt = Instant.now();
+      job.status = status;
+      if (queued == job) queued = null;
+    }
+  }
+
+  private Job find(String jobId) {
+    Job job = jobs.get(jobId);
+    if (job == null) throw new NoSuchElementException("Unknown repricing job " + jobId);
+    return job;
+  }
+
+  // Finished jobs stay pollable for the retention period
+  private void purgeFinished() {
+    Instant cutoff = Instant.now().minus(retention);
+    jobs.values().removeIf(j -> j.finishedAt != null && j.finishedAt.isBefore(cutoff));
+  }
+}
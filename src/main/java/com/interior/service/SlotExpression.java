@@ -0,0 +1,10 @@
+package com.interior.service;
+
+/**
+ * Expression bound to a slot layout; variables are read from a primitive frame by index.
+ * Boolean conditions return 1.0 (true) or 0.0 (false).
+ */
+@FunctionalInterface
+public interface SlotExpression {
+  double eval(double[] slots);
+}
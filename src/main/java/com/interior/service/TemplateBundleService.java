@@ -0,0 +1,260 @@
+package com.interior.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.yaml.YAMLMapper;
+import com.interior.dto.TemplateBundle;
+import com.interior.dto.TemplateImportResult;
+import com.interior.model.*;
+import com.interior.repository.*;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.Callable;
+
+/**
+ * Bulk import/export of templates as NDJSON bundles, one {@link TemplateBundle} per line; import also
+ * takes YAML, one bundle per document. Import streams the input: every bundle is validated and compiled
+ * before anything is written, and accepted templates are written a chunk at a time, each chunk in its
+ * own transaction.
+ * Existing templates (matched by code) get their rules replaced and their version bumped.
+ */
+@Service
+public class TemplateBundleService {
+
+  private static final int CHUNK_SIZE = 100;
+  private static final YAMLMapper YAML = new YAMLMapper();
+
+  private final ProductTemplateRepository templateRepository;
+  private final TemplateParamRepository paramRepository;
+  private final TemplateDerivedVarRepository derivedVarRepository;
+  private final TemplatePartRuleRepository partRuleRepository;
+  private final TemplateValidationRuleRepository validationRuleRepository;
+  private final TemplateCompiler templateCompiler;
+  private final TemplateEngineService templateEngineService;
+  private final ObjectMapper objectMapper;
+  private final Validator validator;
+  private final ApplicationEventPublisher events;
+  private final TransactionTemplate tx;
+
+  public TemplateBundleService(ProductTemplateRepository templateRepository,
+                               TemplateParamRepository paramRepository,
+                               TemplateDerivedVarRepository derivedVarRepository,
+                               TemplatePartRuleRepository partRuleRepository,
+                               TemplateValidationRuleRepository validationRuleRepository,
+                               TemplateCompiler templateCompiler,
+                               TemplateEngineService templateEngineService,
+                               ObjectMapper objectMapper,
+                               Validator validator,
+                               ApplicationEventPublisher events,
+                               PlatformTransactionManager transactionManager) {
+    this.templateRepository = templateRepository;
+    this.paramRepository = paramRepository;
+    this.derivedVarRepository = derivedVarRepository;
+    this.partRuleRepository = partRuleRepository;
+    this.validationRuleRepository = validationRuleRepository;
+    this.templateCompiler = templateCompiler;
+    this.templateEngineService = templateEngineService;
+    this.objectMapper = objectMapper;
+    this.validator = validator;
+    this.events = events;
+    this.tx = new TransactionTemplate(transactionManager);
+  }
+
+  /** Import an NDJSON bundle. Invalid lines are rejected and reported; all other lines are written. */
+  public TemplateImportResult importBundle(InputStream in) throws IOException {
+    Import run = new Import();
+    BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+    String line;
+    int lineNo = 0;
+    while ((line = reader.readLine()) != null) {
+      lineNo++;
+      if (line.isBlank()) continue;
+      String json = line;
+      run.add("line " + lineNo, () -> objectMapper.readValue(json, TemplateBundle.class));
+    }
+    return run.finish();
+  }
+
+  /**
+   * Import a YAML bundle: one {@link TemplateBundle} per {@code ---} document, checked and written like
+   * NDJSON lines. Malformed YAML cannot be read past, so it rejects the rest of the stream.
+   */
+  public TemplateImportResult importYamlBundle(InputStream in) throws IOException {
+    Import run = new Import();
+    int docNo = 0;
+    try (MappingIterator<JsonNode> docs = YAML.readerFor(JsonNode.class).readValues(in)) {
+      while (docs.hasNextValue()) {
+        JsonNode doc = docs.nextValue();
+        docNo++;
+        if (doc == null || doc.isNull() || doc.isMissingNode()) continue;
+        run.add("document " + docNo, () -> objectMapper.treeToValue(doc, TemplateBundle.class));
+      }
+    } catch (JsonProcessingException e) {
+      run.reject("document " + (docNo + 1), null, e.getOriginalMessage());
+    }
+    return run.finish();
+  }
+
+  /** One import: bundles are checked as they are read and accepted ones written a chunk at a time. */
+  private final class Import {
+    private final TemplateImportResult result = new TemplateImportResult();
+    private final Set<String> seen = new HashSet<>();
+    private final List<TemplateBundle> chunk = new ArrayList<>(CHUNK_SIZE);
+
+    void add(String where, Callable<TemplateBundle> read) {
+      TemplateBundle bundle = null;
+      try {
+        bundle = read.call();
+        check(bundle, seen);
+        chunk.add(bundle);
+      } catch (Exception e) {
+        reject(where, bundle, e.getMessage());
+      }
+      if (chunk.size() == CHUNK_SIZE) {
+        write(chunk, result);
+        chunk.clear();
+      }
+    }
+
+    void reject(String where, TemplateBundle bundle, String message) {
+      String code = bundle == null || bundle.getTemplate() == null ? "?" : bundle.getTemplate().getCode();
+      result.setRejected(result.getRejected() + 1);
+      result.getErrors().add(where + " (" + code + "): " + message);
+    }
+
+    TemplateImportResult finish() {
+      if (!chunk.isEmpty()) write(chunk, result);
+      return result;
+    }
+  }
+
+  /** Stream every template with its rules, one NDJSON line each, paging by id. */
+  public void exportBundle(OutputStream out) throws IOException {
+    Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+    long after = 0;
+    while (true) {
+      List<ProductTemplate> page = templateRepository.findByIdGreaterThanOrderById(after, PageRequest.of(0, CHUNK_SIZE));
+      if (page.isEmpty()) break;
+      List<Long> ids = page.stream().map(ProductTemplate::getId).toList();
+      Map<Long, TemplateBundle> bundles = new LinkedHashMap<>();
+      for (ProductTemplate t : page) {
+        TemplateBundle b = new TemplateBundle();
+        b.setTemplate(t);
+        bundles.put(t.getId(), b);
+      }
+      paramRepository.findAllByTemplateIds(ids).forEach(r -> bundles.get(r.getTemplate().getId()).getParams().add(r));
+      derivedVarRepository.findAllByTemplateIds(ids).forEach(r -> bundles.get(r.getTemplate().getId()).getDerivedVars().add(r));
+      partRuleRepository.findAllByTemplateIds(ids).forEach(r -> bundles.get(r.getTemplate().getId()).getPartRules().add(r));
+      validationRuleRepository.findAllByTemplateIds(ids).forEach(r -> bundles.get(r.getTemplate().getId()).getValidationRules().add(r));
+      for (TemplateBundle b : bundles.values()) {
+        writer.write(objectMapper.writeValueAsString(b));
+        writer.write('\n');
+      }
+      writer.flush();
+      after = ids.get(ids.size() - 1);
+    }
+  }
+
+  /** Bean validation plus a full compile, so bad expressions and derived-var cycles never reach the database. */
+  private void check(TemplateBundle b, Set<String> seen) {
+    if (b.getTemplate() == null) throw new IllegalArgumentException("missing template");
+    List<Object> rows = new ArrayList<>();
+    rows.add(b.getTemplate());
+    rows.addAll(b.getParams());
+    rows.addAll(b.getDerivedVars());
+    rows.addAll(b.getPartRules());
+    rows.addAll(b.getValidationRules());
+    for (Object row : rows) {
+      for (ConstraintViolation<Object> v : validator.validate(row)) {
+        throw new IllegalArgumentException(row.getClass().getSimpleName() + "." + v.getPropertyPath() + " " + v.getMessage());
+      }
+    }
+    if (!seen.add(b.getTemplate().getCode())) {
+      throw new IllegalArgumentException("template code appears more than once in bundle");
+    }
+    b.getPartRules().sort(Comparator.comparing(r -> r.getExecutionOrder() == null ? 0 : r.getExecutionOrder()));
+    CompiledTemplate compiled = templateCompiler.compile(b.getTemplate(), b.getParams(), b.getDerivedVars(),
+        b.getValidationRules(), b.getPartRules());
+
+    // Same renumbering as ProductTemplateService.replaceDerivedVars: executionOrder follows dependencies
+    Map<String, Integer> order = new HashMap<>();
+    List<CompiledTemplate.DerivedVar> sorted = compiled.getDerivedVars();
+    for (int i = 0; i < sorted.size(); i++) order.put(sorted.get(i).name(), i + 1);
+    b.getDerivedVars().forEach(v -> v.setExecutionOrder(order.get(v.getVarName())));
+  }
+
+  private void write(List<TemplateBundle> chunk, TemplateImportResult result) {
+    List<Long> replaced = tx.execute(status -> {
+      Map<String, ProductTemplate> existing = new HashMap<>();
+      for (ProductTemplate t : templateRepository.findByCodeIn(chunk.stream().map(b -> b.getTemplate().getCode()).toList())) {
+        existing.put(t.getCode(), t);
+      }
+      List<Long> replacedIds = new ArrayList<>();
+      for (TemplateBundle b : chunk) {
+        ProductTemplate current = existing.get(b.getTemplate().getCode());
+        if (current != null) replacedIds.add(current.getId());
+      }
+      if (!replacedIds.isEmpty()) {
+        paramRepository.deleteAllByTemplateIds(replacedIds);
+        derivedVarRepository.deleteAllByTemplateIds(replacedIds);
+        partRuleRepository.deleteAllByTemplateIds(replacedIds);
+        validationRuleRepository.deleteAllByTemplateIds(replacedIds);
+      }
+
+      List<ProductTemplate> templates = new ArrayList<>(chunk.size());
+      for (TemplateBundle b : chunk) {
+        ProductTemplate incoming = b.getTemplate();
+        ProductTemplate current = existing.get(incoming.getCode());
+        if (current == null) {
+          incoming.setId(null);
+          incoming.setVersion(1);
+          templates.add(incoming);
+        } else {
+          current.setName(incoming.getName());
+          current.setCategory(incoming.getCategory());
+          current.setDescription(incoming.getDescription());
+          current.setBaseThickness(incoming.getBaseThickness());
+          current.setBackPanelThickness(incoming.getBackPanelThickness());
+          current.setPlinthHeight(incoming.getPlinthHeight());
+          current.setVersion(current.getVersion() == null ? 1 : current.getVersion() + 1);
+          templates.add(current);
+        }
+      }
+      templates = templateRepository.saveAll(templates);
+
+      List<TemplateParam> params = new ArrayList<>();
+      List<TemplateDerivedVar> derivedVars = new ArrayList<>();
+      List<TemplatePartRule> partRules = new ArrayList<>();
+      List<TemplateValidationRule> validations = new ArrayList<>();
+      for (int i = 0; i < chunk.size(); i++) {
+        TemplateBundle b = chunk.get(i);
+        ProductTemplate t = templates.get(i);
+        b.getParams().forEach(r -> { r.setId(null); r.setTemplate(t); params.add(r); });
+        b.getDerivedVars().forEach(r -> { r.setId(null); r.setTemplate(t); derivedVars.add(r); });
+        b.getPartRules().forEach(r -> { r.setId(null); r.setTemplate(t); partRules.add(r); });
+        b.getValidationRules().forEach(r -> { r.setId(null); r.setTemplate(t); validations.add(r); });
+      }
+      paramRepository.saveAll(params);
+      derivedVarRepository.saveAll(derivedVars);
+      partRuleRepository.saveAll(partRules);
+      validationRuleRepository.saveAll(validations);
+      return replacedIds;
+    });
+
+    replaced.forEach(templateEngineService::evictTemplate);
+    if (!replaced.isEmpty()) events.publishEvent(new TemplatesChangedEvent(replaced));
+    result.setUpdated(result.getUpdated() + replaced.size());
+    result.setCreated(result.getCreated() + chunk.size() - replaced.size());
+  }
+}
@@ -0,0 +1,213 @@
+package com.interior.service;
+
+import com.interior.dto.TemplateCompileStats;
+import com.interior.model.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import com.interior.service.CompiledExpression.Node;
+import com.interior.service.CompiledExpression.Slot;
+
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Compiles a template's rule rows into a {@link CompiledTemplate}: every expression is
+ * parsed once, all referenced names get a frame slot, and the expressions are bound to
+ * those slots with the configured evaluator backend. Derived vars are ordered by their
+ * dependency graph and inlined where they are used, so only the vars an item actually needs
+ * get evaluated. {@link TemplateOptimizer} then folds constants and shares identical
+ * subexpressions across all of the template's rules.
+ */
+@Service
+public class TemplateCompiler {
+
+  private static final Logger log = LoggerFactory.getLogger(TemplateCompiler.class);
+
+  private final ExpressionEvaluatorService expressionEvaluator;
+
+  public TemplateCompiler(ExpressionEvaluatorService expressionEvaluator) {
+    this.expressionEvaluator = expressionEvaluator;
+  }
+
+  /**
+   * Compile a template. Part rules are expected in execution order; derived vars may come
+   * in any order, they are evaluated by dependency. Throws if the derived vars form a cycle.
+   */
+  public CompiledTemplate compile(ProductTemplate template,
+                                  List<TemplateParam> params,
+                                  List<TemplateDerivedVar> derivedVars,
+                                  List<TemplateValidationRule> validationRules,
+                                  List<TemplatePartRule> partRules) {
+    TemplateSymbolTable.Builder builder = TemplateSymbolTable.builder();
+    params.forEach(p -> builder.add(p.getParamName()));
+    derivedVars.forEach(v -> builder.add(v.getVarName()));
+
+    // Parse everything first so override-only names referenced by rules also get a slot
+    Map<String, CompiledExpression> derivedExprs = new LinkedHashMap<>();
+    for (TemplateDerivedVar v : derivedVars) {
+      CompiledExpression expr = parse(builder, v.getExpression(), false, "derived var '" + v.getVarName() + "'");
+      if (derivedExprs.put(v.getVarName(), expr) != null) {
+        throw new TemplateEngineService.TemplateEngineException("Derived variable '" + v.getVarName() + "' is defined more than once");
+      }
+    }
+    List<CompiledExpression> conditions = new ArrayList<>();
+    for (TemplateValidationRule r : validationRules) {
+      conditions.add(parse(builder, r.getConditionExpr(), true, "validation rule '" + r.getErrorMessage() + "'"));
+    }
+    List<CompiledExpression[]> partExprs = new ArrayList<>();
+    for (TemplatePartRule r : partRules) {
+      String what = "part '" + r.getPartName() + "'";
+      partExprs.add(new CompiledExpression[] {
+          parse(builder, r.getWidthExpr(), false, what),
+          parse(builder, r.getHeightExpr(), false, what),
+          r.getThicknessExpr() != null ? parse(builder, r.getThicknessExpr(), false, what) : null,
+          parse(builder, r.getQtyExpr(), false, what)
+      });
+    }
+    TemplateSymbolTable symbols = builder.build();
+
+    // Order derived vars by dependency and inline each into the trees that reference it
+    DerivedVarGraph graph = new DerivedVarGraph(derivedExprs, symbols);
+    Function<String, Node> resolve = graph::resolve;
+
+    TemplateOptimizer optimizer = new TemplateOptimizer(symbols.size());
+    int operationsBefore = derivedExprs.values().stream().mapToInt(CompiledExpression::operationCount).sum();
+    int[] conditionRoots = new int[conditions.size()];
+    for (int i = 0; i < conditions.size(); i++) {
+      conditionRoots[i] = optimizer.add(conditions.get(i).substitute(resolve));
+      operationsBefore += conditions.get(i).operationCount();
+    }
+    int[][] partRoots = new int[partExprs.size()][4];
+    for (int i = 0; i < partExprs.size(); i++) {
+      CompiledExpression[] e = partExprs.get(i);
+      for (int j = 0; j < e.length; j++) {
+        partRoots[i][j] = e[j] != null ? optimizer.add(e[j].substitute(resolve)) : -1;
+        operationsBefore += e[j] != null ? e[j].operationCount() : 0;
+      }
+    }
+    TemplateOptimizer.Result optimized = optimizer.finish();
+
+    double[] initialFrame = new double[symbols.size() + optimized.extraSlots()];
+    Arrays.fill(initialFrame, 0, symbols.size(), Double.NaN);
+    initialFrame[TemplateSymbolTable.T] = template.getBaseThickness() != null ? template.getBaseThickness() : 18.0;
+    initialFrame[TemplateSymbolTable.BACK_T] = template.getBackPanelThickness() != null ? template.getBackPanelThickness() : 6.0;
+    initialFrame[TemplateSymbolTable.PLINTH] = template.getPlinthHeight() != null ? template.getPlinthHeight() : 100.0;
+    for (TemplateParam param : params) {
+      if (param.getDefaultValue() != null) {
+        initialFrame[symbols.slotOf(param.getParamName())] = param.getDefaultValue();
+      }
+    }
+
+    List<CompiledTemplate.DerivedVar> derived = new ArrayList<>();
+    for (String name : graph.order()) {
+      derived.add(new CompiledTemplate.DerivedVar(name, derivedExprs.get(name).getSource(), graph.dependencies(name)));
+    }
+    List<CompiledTemplate.Validation> validations = new ArrayList<>();
+    for (int i = 0; i < validationRules.size(); i++) {
+      TemplateValidationRule r = validationRules.get(i);
+      validations.add(new CompiledTemplate.Validation(r.getConditionExpr(),
+          executable(optimized, conditionRoots[i], r.getConditionExpr()), r.getErrorMessage()));
+    }
+    List<CompiledTemplate.PartRule> parts = new ArrayList<>();
+    for (int i = 0; i < partRules.size(); i++) {
+      TemplatePartRule r = partRules.get(i);
+      int[] roots = partRoots[i];
+      parts.add(new CompiledTemplate.PartRule(r.getPartName(), r.getPartType(),
+          executable(optimized, roots[0], r.getWidthExpr()),
+          executable(optimized, roots[1], r.getHeightExpr()),
+          roots[2] >= 0 ? executable(optimized, roots[2], r.getThicknessExpr()) : null,
+          executable(optimized, roots[3], r.getQtyExpr()),
+          r.getMaterialType(), r.getEdgeBanding(), r.getGrainDirection()));
+    }
+
+    TemplateCompileStats stats = new TemplateCompileStats();
+    stats.setTemplateId(template.getId());
+    stats.setCode(template.getCode());
+    stats.setVersion(template.getVersion());
+    stats.setExpressions(derivedExprs.size() + optimized.roots().size());
+    stats.setOperationsBefore(operationsBefore);
+    stats.setOperationsAfter(optimized.operationsAfter());
+    stats.setConstantsFolded(optimized.constantsFolded());
+    stats.setSharedSubexpressions(optimized.memoCount());
+    stats.setEvaluationsSavedPerItem(operationsBefore - optimized.operationsAfter());
+    stats.setDerivedVarOrder(graph.order());
+    log.debug("Compiled template {} v{}: {} operations per item -> {} ({} folded, {} shared)",
+        template.getCode(), template.getVersion(), stats.getOperationsBefore(), stats.getOperationsAfter(),
+        stats.getConstantsFolded(), stats.getSharedSubexpressions());
+
+    return new CompiledTemplate(template.getId(), template.getVersion(), template.getCode(),
+        symbols, initialFrame, derived, validations, parts, stats);
+  }
+
+  private CompiledExpression parse(TemplateSymbolTable.Builder builder, String expr, boolean condition, String what) {
+    try {
+      CompiledExpression compiled = condition
+          ? expressionEvaluator.compileCondition(expr)
+          : expressionEvaluator.compile(expr);
+      compiled.getVariables().forEach(builder::add);
+      return compiled;
+    } catch (ExpressionEvaluatorService.ExpressionException e) {
+      throw new ExpressionEvaluatorService.ExpressionException("Invalid " + what + ": " + e.getMessage(), e);
+    }
+  }
+
+  /**
+   * Dependency graph of derived vars. A reference to a derived var resolves to that var's
+   * (inlined) expression; a var referencing its own name reads the underlying param/base slot.
+   */
+  private static final class DerivedVarGraph {
+    private final Map<String, CompiledExpression> exprs;
+    private final TemplateSymbolTable symbols;
+    private final Map<String, Node> resolved = new HashMap<>();
+    private final LinkedHashSet<String> visiting = new LinkedHashSet<>();
+    private final List<String> order = new ArrayList<>();
+
+    DerivedVarGraph(Map<String, CompiledExpression> exprs, TemplateSymbolTable symbols) {
+      this.exprs = exprs;
+      this.symbols = symbols;
+      exprs.keySet().forEach(this::resolve);
+    }
+
+    /** Node for a variable reference: an inlined derived var or a frame slot. */
+    Node resolve(String name) {
+      return exprs.containsKey(name) ? derived(name) : slot(name);
+    }
+
+    /** Derived vars in a valid evaluation order (dependencies first). */
+    List<String> order() {
+      return List.copyOf(order);
+    }
+
+    List<String> dependencies(String name) {
+      return exprs.get(name).getVariables().stream()
+          .filter(v -> !v.equals(name) && exprs.containsKey(v))
+          .toList();
+    }
+
+    private Node derived(String name) {
+      Node done = resolved.get(name);
+      if (done != null) return done;
+      if (!visiting.add(name)) {
+        List<String> path = new ArrayList<>(visiting);
+        path = path.subList(path.indexOf(name), path.size());
+        throw new TemplateEngineService.TemplateEngineException(
+            "Cycle in derived variables: " + String.join(" -> ", path) + " -> " + name);
+      }
+      Node node = exprs.get(name).substitute(ref -> ref.equals(name) ? slot(ref) : resolve(ref));
+      visiting.remove(name);
+      resolved.put(name, node);
+      order.add(name);
+      return node;
+    }
+
+    private Node slot(String name) {
+      return new Slot(symbols.slotOf(name), name);
+    }
+  }
+
+  private SlotExpression executable(TemplateOptimizer.Result optimized, int root, String source) {
+    return expressionEvaluator.toSlotExpression(optimized.roots().get(root), source);
+  }
+}
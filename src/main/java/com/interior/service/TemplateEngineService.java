@@ -2,39 +2,123 @@ package com.interior.service;
 
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.interior.dto.TemplateCacheStats;
 import com.interior.model.*;
 import com.interior.repository.*;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+import java.util.function.IntConsumer;
 
 /**
  * Template Engine Service - Generates cutlist items from product templates.
  * Implements 8-step flow from TEMPLATE_ENGINE.md.
+ * Rules are evaluated against a slot-indexed {@code double[]} frame (see {@link TemplateSymbolTable}),
+ * so the per-part hot path does no map lookups or boxing.
  */
 @Service
 public class TemplateEngineService {
 
-  private final ExpressionEvaluatorService expressionEvaluator;
+  private final TemplateCompiler templateCompiler;
   private final TemplateParamRepository templateParamRepository;
   private final TemplateDerivedVarRepository templateDerivedVarRepository;
   private final TemplatePartRuleRepository templatePartRuleRepository;
   private final TemplateValidationRuleRepository templateValidationRuleRepository;
   private final ObjectMapper objectMapper;
+  private final LruCache<TemplateKey, CompiledTemplate> compiledTemplates;
+  private final LruCache<ResultKey, List<GeneratedPart>> partResults;
+  private final ForkJoinPool evaluationPool;
+
+  /** Compiled templates are immutable per version; a rule write bumps the version. */
+  record TemplateKey(Long templateId, Integer version) {
+  }
 
   public TemplateEngineService(
-      ExpressionEvaluatorService expressionEvaluator,
+      TemplateCompiler templateCompiler,
       TemplateParamRepository templateParamRepository,
       TemplateDerivedVarRepository templateDerivedVarRepository,
       TemplatePartRuleRepository templatePartRuleRepository,
       TemplateValidationRuleRepository templateValidationRuleRepository,
-      ObjectMapper objectMapper) {
-    this.expressionEvaluator = expressionEvaluator;
+      ObjectMapper objectMapper,
+      @Value("${interior.template-cache.max-size:256}") int templateCacheSize,
+      @Value("${interior.cutlist-cache.max-size:10000}") int cutlistCacheSize,
+      @Value("${interior.cutlist.parallelism:0}") int parallelism) {
+    this.templateCompiler = templateCompiler;
     this.templateParamRepository = templateParamRepository;
     this.templateDerivedVarRepository = templateDerivedVarRepository;
     this.templatePartRuleRepository = templatePartRuleRepository;
     this.templateValidationRuleRepository = templateValidationRuleRepository;
     this.objectMapper = objectMapper;
+    this.compiledTemplates = new LruCache<>(templateCacheSize);
+    this.partResults = new LruCache<>(cutlistCacheSize);
+    this.evaluationPool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+  }
+
+  @PreDestroy
+  void shutdown() {
+    evaluationPool.shutdown();
+  }
+
+  /** Outcome of one quote item in a batch: its cutlist, or the error that stopped it. */
+  public record ItemResult(QuoteItem item, List<CutlistItem> cutlist, TemplateEngineException error) {
+    public boolean failed() {
+      return error != null;
+    }
+  }
+
+  /**
+   * Generate cutlists for many quote items on the bounded evaluation pool.
+   * Results are in input order; a failing item yields its error without affecting the others.
+   * Only evaluates - nothing is persisted.
+   */
+  public List<ItemResult> generateCutlists(List<QuoteItem> items) {
+    return generateCutlists(items, () -> false, done -> { });
+  }
+
+  /**
+   * As {@link #generateCutlists(List)}, reporting the number of items finished so far to {@code onItemDone}
+   * (from worker threads). Once {@code cancelled} returns true the remaining items are skipped and
+   * a {@link CancellationException} is thrown.
+   */
+  public List<ItemResult> generateCutlists(List<QuoteItem> items, BooleanSupplier cancelled, IntConsumer onItemDone) {
+    // Compile every template up front on the calling thread so workers only evaluate
+    List<ProductTemplate> templates = new ArrayList<>();
+    for (QuoteItem item : items) {
+      Product product = item.getProduct();
+      if (product != null && product.getTemplate() != null) templates.add(product.getTemplate());
+    }
+    prefetchTemplates(templates);
+
+    AtomicInteger done = new AtomicInteger();
+    Function<QuoteItem, ItemResult> step = item -> {
+      if (cancelled.getAsBoolean()) throw new CancellationException("Cutlist generation cancelled");
+      ItemResult result = generateSafely(item);
+      onItemDone.accept(done.incrementAndGet());
+      return result;
+    };
+    if (items.size() < 2) {
+      return items.stream().map(step).toList();
+    }
+    return onEvaluationPool(() -> items.parallelStream().map(step).toList());
+  }
+
+  private ItemResult generateSafely(QuoteItem item) {
+    try {
+      return new ItemResult(item, generateCutlistForQuoteItem(item), null);
+    } catch (TemplateEngineException e) {
+      return new ItemResult(item, Collections.emptyList(), e);
+    }
   }
 
   /**
@@ -47,94 +131,235 @@ public class TemplateEngineService {
       return Collections.emptyList(); // No template - fallback to legacy logic
     }
 
-    ProductTemplate template = product.getTemplate();
-
     try {
-      // Step 1: Resolve ProductTemplate (already done above)
+      List<GeneratedPart> parts = generateParts(product.getTemplate(),
+          item.getWidth(), item.getHeight(), item.getDepth(), item.getTemplateParams());
 
-      // Step 2: Build base vars (W, H, D, T, BACK_T, PLINTH)
-      Map<String, Double> vars = buildBaseVars(item, template);
+      // Step 8: Bind parts to the quote item and return (caller will persist)
+      List<CutlistItem> cutlistItems = new ArrayList<>(parts.size());
+      for (GeneratedPart part : parts) cutlistItems.add(part.toCutlistItem(item));
+      return cutlistItems;
 
-      // Step 3: Load template params with defaults
-      List<TemplateParam> params = templateParamRepository.findByTemplate_IdOrderByParamName(template.getId());
-      for (TemplateParam param : params) {
-        if (param.getDefaultValue() != null) {
-          vars.put(param.getParamName(), param.getDefaultValue());
-        }
-      }
+    } catch (ExpressionEvaluatorService.ExpressionException e) {
+      throw new TemplateEngineException("Template evaluation error for product '" + product.getName() + "': " + e.getMessage(), e);
+    } catch (Exception e) {
+      throw new TemplateEngineException("Unexpected error generating cutlist for product '" + product.getName() + "': " + e.getMessage(), e);
+    }
+  }
+
+  /**
+   * Steps 1-7 for one set of inputs, returning immutable part descriptors.
+   * Inputs identical to an earlier call (same template version, dimensions and effective
+   * params after overrides) are served from the result cache without evaluating anything.
+   */
+  public List<GeneratedPart> generateParts(ProductTemplate template, Double width, Double height, Double depth,
+                                           Map<String, Double> overrides) {
+    return generateParts(template, width, height, depth, overrides, true);
+  }
+
+  /** {@link #generateParts} without reading or filling the result cache, for one-off bulk evaluation. */
+  public List<GeneratedPart> generatePartsUncached(ProductTemplate template, Double width, Double height, Double depth,
+                                                   Map<String, Double> overrides) {
+    return generateParts(template, width, height, depth, overrides, false);
+  }
 
-      // Step 4: Apply user overrides from templateParamsJson
-      applyUserOverrides(item, vars);
+  private List<GeneratedPart> generateParts(ProductTemplate template, Double width, Double height, Double depth,
+                                            Map<String, Double> overrides, boolean cached) {
+    // Step 1: Resolve ProductTemplate and its compiled rules
+    CompiledTemplate compiled = getCompiledTemplate(template);
 
-      // Step 5: Compute derived variables in order
-      applyDerivedVars(vars, template.getId());
+    // Step 2: Build base vars (W, H, D; T, BACK_T, PLINTH come with the frame)
+    // Step 3: Template params with defaults (also pre-filled in the frame)
+    double[] frame = compiled.newFrame();
+    frame[TemplateSymbolTable.W] = width != null ? width : 0.0;
+    frame[TemplateSymbolTable.H] = height != null ? height : 0.0;
+    frame[TemplateSymbolTable.D] = depth != null ? depth : 0.0;
 
+    // Step 4: Apply user overrides
+    applyUserOverrides(overrides, frame, compiled.getSymbols());
+
+    // Step 5: Derived variables are inlined into the rules and computed on demand,
+    // in dependency order, only when an active validation or part needs them
+
+    if (!cached) {
+      validateRules(frame, compiled);
+      return evaluateParts(frame, compiled);
+    }
+    ResultKey key = new ResultKey(compiled.getTemplateId(), compiled.getVersion(),
+        Arrays.copyOf(frame, compiled.getSymbols().size()));
+    return partResults.computeIfAbsent(key, k -> {
       // Step 6: Run validations
-      validateRules(vars, template.getId());
+      validateRules(frame, compiled);
 
       // Step 7: Generate parts
-      List<CutlistItem> cutlistItems = generateParts(item, vars, template.getId());
+      return evaluateParts(frame, compiled);
+    });
+  }
 
-      // Step 8: Return (caller will persist)
-      return cutlistItems;
+  /** Run {@code task} on the bounded evaluation pool; parallel streams inside it stay on that pool. */
+  public <T> T onEvaluationPool(Callable<T> task) {
+    return evaluationPool.submit(task).join();
+  }
 
-    } catch (ExpressionEvaluatorService.ExpressionException e) {
-      throw new TemplateEngineException("Template evaluation error for product '" + product.getName() + "': " + e.getMessage(), e);
-    } catch (Exception e) {
-      throw new TemplateEngineException("Unexpected error generating cutlist for product '" + product.getName() + "': " + e.getMessage(), e);
+  public TemplateCacheStats getCacheStats() {
+    TemplateCacheStats stats = new TemplateCacheStats();
+    stats.setCompiledTemplates(compiledTemplates.size());
+    stats.setCompiledTemplateHits(compiledTemplates.getHits());
+    stats.setCompiledTemplateMisses(compiledTemplates.getMisses());
+    stats.setCutlistResults(partResults.size());
+    stats.setCutlistResultHits(partResults.getHits());
+    stats.setCutlistResultMisses(partResults.getMisses());
+    return stats;
+  }
+
+  /**
+   * SHA-256 over every input that shapes an item's cutlist: product, template id and version,
+   * dimensions, quantity and param overrides. Equal fingerprints mean the stored cutlist is current.
+   */
+  public String fingerprint(QuoteItem item) {
+    Product product = item.getProduct();
+    ProductTemplate template = product == null ? null : product.getTemplate();
+    String source = String.join("|",
+        String.valueOf(product == null ? null : product.getId()),
+        template == null ? "-" : template.getId() + ":" + template.getVersion(),
+        String.valueOf(item.getWidth()), String.valueOf(item.getHeight()), String.valueOf(item.getDepth()),
+        String.valueOf(item.getQuantity()),
+        String.valueOf(item.getTemplateParams() == null ? null : new TreeMap<>(item.getTemplateParams())));
+    try {
+      return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(source.getBytes(StandardCharsets.UTF_8)));
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
     }
   }
 
   /**
-   * Build base variable context from quote item dimensions and template settings.
+   * Compiled form of a template, loaded from its rule rows at most once per template version.
    */
-  private Map<String, Double> buildBaseVars(QuoteItem item, ProductTemplate template) {
-    Map<String, Double> vars = new HashMap<>();
+  public CompiledTemplate getCompiledTemplate(ProductTemplate template) {
+    return compiledTemplates.computeIfAbsent(new TemplateKey(template.getId(), template.getVersion()),
+        key -> compile(template));
+  }
 
-    // Base dimensions from quote item
-    vars.put("W", item.getWidth() != null ? item.getWidth() : 0.0);
-    vars.put("H", item.getHeight() != null ? item.getHeight() : 0.0);
-    vars.put("D", item.getDepth() != null ? item.getDepth() : 0.0);
+  /**
+   * Compile every template not cached yet, loading the rule rows of all of them in one query
+   * per rule table - four round trips no matter how many templates or items are involved.
+   * A template that fails to compile is skipped here; its items report the error when evaluated.
+   */
+  public void prefetchTemplates(Collection<ProductTemplate> templates) {
+    Map<Long, ProductTemplate> missing = new LinkedHashMap<>();
+    for (ProductTemplate template : templates) {
+      if (!compiledTemplates.containsKey(new TemplateKey(template.getId(), template.getVersion()))) {
+        missing.putIfAbsent(template.getId(), template);
+      }
+    }
+    if (missing.isEmpty()) return;
 
-    // Material specifications from template
-    vars.put("T", template.getBaseThickness() != null ? template.getBaseThickness() : 18.0);
-    vars.put("BACK_T", template.getBackPanelThickness() != null ? template.getBackPanelThickness() : 6.0);
-    vars.put("PLINTH", template.getPlinthHeight() != null ? template.getPlinthHeight() : 100.0);
+    Set<Long> ids = missing.keySet();
+    Map<Long, List<TemplateParam>> params = byTemplate(templateParamRepository.findAllByTemplateIds(ids), TemplateParam::getTemplate);
+    Map<Long, List<TemplateDerivedVar>> derivedVars = byTemplate(templateDerivedVarRepository.findAllByTemplateIds(ids), TemplateDerivedVar::getTemplate);
+    Map<Long, List<TemplateValidationRule>> validations = byTemplate(templateValidationRuleRepository.findAllByTemplateIds(ids), TemplateValidationRule::getTemplate);
+    Map<Long, List<TemplatePartRule>> partRules = byTemplate(templatePartRuleRepository.findAllByTemplateIds(ids), TemplatePartRule::getTemplate);
 
-    return vars;
+    for (ProductTemplate template : missing.values()) {
+      Long id = template.getId();
+      try {
+        compiledTemplates.computeIfAbsent(new TemplateKey(id, template.getVersion()),
+            key -> templateCompiler.compile(template,
+                params.getOrDefault(id, List.of()),
+                derivedVars.getOrDefault(id, List.of()),
+                validations.getOrDefault(id, List.of()),
+                partRules.getOrDefault(id, List.of())));
+      } catch (RuntimeException e) {
+        // reported per item by generateCutlistForQuoteItem
+      }
+    }
+  }
+
+  private static <T> Map<Long, List<T>> byTemplate(List<T> rows, Function<T, ProductTemplate> template) {
+    Map<Long, List<T>> out = new HashMap<>();
+    for (T row : rows) {
+      out.computeIfAbsent(template.apply(row).getId(), k -> new ArrayList<>()).add(row);
+    }
+    return out;
   }
 
   /**
-   * Apply user parameter overrides from QuoteItem.templateParamsJson.
+   * Drop every cached version of a template. Call whenever the template or any of its rule rows is written.
    */
-  private void applyUserOverrides(QuoteItem item, Map<String, Double> vars) {
-    String json = item.getTemplateParamsJson();
-    if (json != null && !json.trim().isEmpty()) {
-      try {
-        Map<String, Object> overrides = objectMapper.readValue(json, new TypeReference<Map<String, Object>>() {});
-        for (Map.Entry<String, Object> entry : overrides.entrySet()) {
-          Object value = entry.getValue();
-          if (value instanceof Number) {
-            vars.put(entry.getKey(), ((Number) value).doubleValue());
-          }
-        }
-      } catch (Exception e) {
-        throw new TemplateEngineException("Failed to parse templateParamsJson: " + e.getMessage(), e);
+  public void evictTemplate(Long templateId) {
+    compiledTemplates.removeIf(key -> key.templateId().equals(templateId));
+    partResults.removeIf(key -> key.templateId.equals(templateId));
+  }
+
+  private CompiledTemplate compile(ProductTemplate template) {
+    Long templateId = template.getId();
+    return templateCompiler.compile(template,
+        templateParamRepository.findByTemplate_IdOrderByParamName(templateId),
+        templateDerivedVarRepository.findByTemplate_IdOrderByExecutionOrder(templateId),
+        templateValidationRuleRepository.findByTemplate_Id(templateId),
+        templatePartRuleRepository.findByTemplate_IdOrderByExecutionOrder(templateId));
+  }
+
+  /**
+   * Parse API-form overrides ({"SHELF_COUNT": 3}) for a product and check each value against the
+   * template's TemplateParam min/max. Names that are not template params carry no bounds.
+   */
+  public Map<String, Double> resolveTemplateParams(Product product, String json) {
+    if (json == null || json.trim().isEmpty()) return new HashMap<>();
+    List<TemplateParam> params = product == null || product.getTemplate() == null
+        ? List.of()
+        : templateParamRepository.findByTemplate_IdOrderByParamName(product.getTemplate().getId());
+    return resolveTemplateParams(json, params);
+  }
+
+  /** {@link #resolveTemplateParams(Product, String)} against already-loaded params of the product's template. */
+  public Map<String, Double> resolveTemplateParams(String json, Collection<TemplateParam> templateParams) {
+    if (json == null || json.trim().isEmpty()) return new HashMap<>();
+    Map<String, Object> values;
+    try {
+      values = objectMapper.readValue(json, new TypeReference<Map<String, Object>>() {});
+    } catch (Exception e) {
+      throw new TemplateEngineException("Failed to parse templateParamsJson: " + e.getMessage(), e);
+    }
+    if (values == null) return new HashMap<>();
+
+    Map<String, TemplateParam> params = new HashMap<>();
+    for (TemplateParam p : templateParams) params.put(p.getParamName(), p);
+
+    Map<String, Double> out = new HashMap<>();
+    for (Map.Entry<String, Object> entry : values.entrySet()) {
+      if (!(entry.getValue() instanceof Number n)) {
+        throw new TemplateEngineException("Template param '" + entry.getKey() + "' must be a number");
+      }
+      double value = n.doubleValue();
+      TemplateParam param = params.get(entry.getKey());
+      if (param != null && param.getMinValue() != null && value < param.getMinValue()) {
+        throw new TemplateEngineException("Template param '" + entry.getKey() + "' must be at least " + param.getMinValue());
       }
+      if (param != null && param.getMaxValue() != null && value > param.getMaxValue()) {
+        throw new TemplateEngineException("Template param '" + entry.getKey() + "' must be at most " + param.getMaxValue());
+      }
+      out.put(entry.getKey(), value);
     }
+    return out;
+  }
+
+  /** Params of several templates in one query, grouped by template id. */
+  public Map<Long, List<TemplateParam>> loadTemplateParams(Collection<Long> templateIds) {
+    if (templateIds.isEmpty()) return new HashMap<>();
+    return byTemplate(templateParamRepository.findAllByTemplateIds(templateIds), TemplateParam::getTemplate);
   }
 
   /**
-   * Compute derived variables in execution order.
+   * Apply user parameter overrides.
+   * Names the template never references have no slot and are ignored.
    */
-  private void applyDerivedVars(Map<String, Double> vars, Long templateId) {
-    List<TemplateDerivedVar> derivedVars = templateDerivedVarRepository.findByTemplate_IdOrderByExecutionOrder(templateId);
-    for (TemplateDerivedVar derivedVar : derivedVars) {
-      try {
-        Double value = expressionEvaluator.evaluateNumeric(derivedVar.getExpression(), vars);
-        vars.put(derivedVar.getVarName(), value);
-      } catch (Exception e) {
-        throw new TemplateEngineException("Error evaluating derived var '" + derivedVar.getVarName() + "': " + e.getMessage(), e);
+  private void applyUserOverrides(Map<String, Double> overrides, double[] frame, TemplateSymbolTable symbols) {
+    if (overrides == null) return;
+    for (Map.Entry<String, Double> entry : overrides.entrySet()) {
+      int slot = symbols.slotOf(entry.getKey());
+      if (slot >= 0 && entry.getValue() != null) {
+        frame[slot] = entry.getValue();
       }
     }
   }
@@ -142,59 +367,73 @@ public class TemplateEngineService {
   /**
    * Validate rules - throw exception if any validation fails.
    */
-  private void validateRules(Map<String, Double> vars, Long templateId) {
-    List<TemplateValidationRule> rules = templateValidationRuleRepository.findByTemplate_Id(templateId);
-    for (TemplateValidationRule rule : rules) {
+  private void validateRules(double[] frame, CompiledTemplate compiled) {
+    for (CompiledTemplate.Validation rule : compiled.getValidations()) {
+      double isValid;
       try {
-        Boolean isValid = expressionEvaluator.evaluateBoolean(rule.getConditionExpr(), vars);
-        if (!isValid) {
-          throw new TemplateEngineException("Validation failed: " + rule.getErrorMessage());
-        }
+        isValid = rule.compiled().eval(frame);
       } catch (ExpressionEvaluatorService.ExpressionException e) {
-        throw new TemplateEngineException("Error in validation rule: " + e.getMessage(), e);
+        throw new TemplateEngineException("Error in validation rule '" + rule.conditionExpr() + "': " + e.getMessage(), e);
+      }
+      if (isValid == 0) {
+        throw new TemplateEngineException("Validation failed: " + rule.errorMessage());
       }
     }
   }
 
   /**
-   * Generate cutlist items from part rules.
+   * Generate parts from part rules.
+   * Quantity is evaluated first so inactive parts never pull in their derived vars.
    */
-  private List<CutlistItem> generateParts(QuoteItem quoteItem, Map<String, Double> vars, Long templateId) {
-    List<TemplatePartRule> partRules = templatePartRuleRepository.findByTemplate_IdOrderByExecutionOrder(templateId);
-    List<CutlistItem> cutlistItems = new ArrayList<>();
+  private List<GeneratedPart> evaluateParts(double[] frame, CompiledTemplate compiled) {
+    List<GeneratedPart> parts = new ArrayList<>();
 
-    for (TemplatePartRule rule : partRules) {
+    for (CompiledTemplate.PartRule rule : compiled.getPartRules()) {
       try {
-        Double width = expressionEvaluator.evaluateNumeric(rule.getWidthExpr(), vars);
-        Double height = expressionEvaluator.evaluateNumeric(rule.getHeightExpr(), vars);
-        Double thickness = rule.getThicknessExpr() != null
-            ? expressionEvaluator.evaluateNumeric(rule.getThicknessExpr(), vars)
-            : vars.get("T");
-        Double qtyDouble = expressionEvaluator.evaluateNumeric(rule.getQtyExpr(), vars);
-        int qty = qtyDouble.intValue();
-
+        int qty = (int) rule.qty().eval(frame);
         if (qty <= 0) continue; // Skip parts with zero or negative quantity
 
-        CutlistItem item = new CutlistItem();
-        item.setQuoteItem(quoteItem);
-        item.setPartName(rule.getPartName());
-        item.setPartType(rule.getPartType());
-        item.setCutWidth(width);
-        item.setCutHeight(height);
-        item.setThickness(thickness);
-        item.setQuantity(qty);
-        item.setMaterialType(rule.getMaterialType());
-        item.setEdgeBanding(rule.getEdgeBanding());
-        item.setGrainDirection(rule.getGrainDirection());
+        double width = rule.width().eval(frame);
+        double height = rule.height().eval(frame);
+        double thickness = rule.thickness() != null
+            ? rule.thickness().eval(frame)
+            : frame[TemplateSymbolTable.T];
 
-        cutlistItems.add(item);
+        parts.add(new GeneratedPart(rule.partName(), rule.partType(), width, height, thickness, qty,
+            rule.materialType(), rule.edgeBanding(), rule.grainDirection()));
 
       } catch (Exception e) {
-        throw new TemplateEngineException("Error generating part '" + rule.getPartName() + "': " + e.getMessage(), e);
+        throw new TemplateEngineException("Error generating part '" + rule.partName() + "': " + e.getMessage(), e);
       }
     }
 
-    return cutlistItems;
+    return List.copyOf(parts);
+  }
+
+  /** Result cache key: template version plus every input slot of the frame after overrides. */
+  private static final class ResultKey {
+    private final Long templateId;
+    private final Integer version;
+    private final double[] inputs;
+    private final int hash;
+
+    ResultKey(Long templateId, Integer version, double[] inputs) {
+      this.templateId = templateId;
+      this.version = version;
+      this.inputs = inputs;
+      this.hash = Objects.hash(templateId, version) * 31 + Arrays.hashCode(inputs);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      return o instanceof ResultKey k && Objects.equals(templateId, k.templateId)
+          && Objects.equals(version, k.version) && Arrays.equals(inputs, k.inputs);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
   }
 
   public static class TemplateEngineException extends RuntimeException {
@@ -0,0 +1,183 @@
+package com.interior.service;
+
+import com.interior.service.CompiledExpression.*;
+
+import java.util.*;
+
+/**
+ * Template-wide optimizer over slot-bound expression trees.
+ * Folds constant subtrees and merges structurally identical subexpressions across all
+ * of a template's rules; every operation that ends up used more than once is wrapped in a
+ * {@link Memo} so it is evaluated at most once per item.
+ *
+ * <p>Derived vars arrive already inlined into the rules that use them, so a derived var
+ * referenced by several rules collapses into one shared subtree, and one that no rule
+ * reaches is never evaluated.
+ */
+final class TemplateOptimizer {
+
+  private static final int NUM = 0, SLOT = 1, NEG = 2, BINARY = 3, CALL = 4;
+
+  private record Key(int kind, int sub, int a, int b, long bits) {
+  }
+
+  private final int memoBase;
+  private final Map<Key, Node> canonical = new HashMap<>();
+  private final Map<Node, Integer> ids = new IdentityHashMap<>();
+  private final Map<Node, Node> canonicalized = new IdentityHashMap<>();
+  private final List<Node> roots = new ArrayList<>();
+  private int constantsFolded;
+
+  /**
+   * @param symbolCount number of variable slots; memo slots are allocated after them
+   */
+  TemplateOptimizer(int symbolCount) {
+    this.memoBase = symbolCount;
+  }
+
+  /** Register a root; returns its index in {@link Result#roots()}. */
+  int add(Node root) {
+    roots.add(canonicalize(root));
+    return roots.size() - 1;
+  }
+
+  Result finish() {
+    // Count distinct parents (plus root uses) of every node in the merged DAG
+    Map<Node, Integer> refs = new IdentityHashMap<>();
+    for (Node root : roots) countRefs(root, refs);
+
+    Map<Node, Node> rebuilt = new IdentityHashMap<>();
+    int[] memoCount = {0};
+    List<Node> out = new ArrayList<>(roots.size());
+    for (Node root : roots) out.add(rebuild(root, refs, rebuilt, memoCount));
+
+    Set<Node> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+    int operationsAfter = 0;
+    for (Node root : out) operationsAfter += countOperations(root, seen);
+
+    return new Result(out, memoCount[0], operationsAfter, constantsFolded);
+  }
+
+  record Result(List<Node> roots, int memoCount, int operationsAfter, int constantsFolded) {
+    /** Frame slots needed on top of the symbol table: one value and one flag per memo. */
+    int extraSlots() {
+      return memoCount * 2;
+    }
+  }
+
+  private Node canonicalize(Node node) {
+    // Inlined derived vars share node instances; canonicalize each instance only once
+    Node done = canonicalized.get(node);
+    if (done == null) {
+      done = canonicalizeNode(node);
+      canonicalized.put(node, done);
+    }
+    return done;
+  }
+
+  private Node canonicalizeNode(Node node) {
+    if (node instanceof Num n) {
+      return intern(new Key(NUM, 0, 0, 0, Double.doubleToLongBits(n.value())), n);
+    }
+    if (node instanceof Slot s) {
+      return intern(new Key(SLOT, s.index(), 0, 0, 0), s);
+    }
+    if (node instanceof Neg n) {
+      Node operand = canonicalize(n.operand());
+      if (operand instanceof Num v) return folded(-v.value());
+      return intern(new Key(NEG, 0, id(operand), 0, 0), new Neg(operand));
+    }
+    if (node instanceof Binary b) {
+      Node left = canonicalize(b.left());
+      Node right = canonicalize(b.right());
+      if (left instanceof Num l && right instanceof Num r && !(b.op() == Op.DIV && r.value() == 0)) {
+        return folded(b.op().apply(l.value(), r.value()));
+      }
+      return intern(new Key(BINARY, b.op().ordinal(), id(left), id(right), 0), new Binary(b.op(), left, right));
+    }
+    if (node instanceof Call c) {
+      List<Node> args = new ArrayList<>(c.args().size());
+      boolean constant = true;
+      for (Node arg : c.args()) {
+        Node a = canonicalize(arg);
+        constant &= a instanceof Num;
+        args.add(a);
+      }
+      Call call = new Call(c.fn(), List.copyOf(args));
+      if (constant) {
+        double[] values = args.stream().mapToDouble(a -> ((Num) a).value()).toArray();
+        return folded(call.apply(values));
+      }
+      int second = args.size() > 1 ? id(args.get(1)) : -1;
+      return intern(new Key(CALL, c.fn().ordinal(), id(args.get(0)), second, 0), call);
+    }
+    throw new IllegalArgumentException("Unexpected node: " + node);
+  }
+
+  private Node folded(double value) {
+    constantsFolded++;
+    return intern(new Key(NUM, 0, 0, 0, Double.doubleToLongBits(value)), new Num(value));
+  }
+
+  private Node intern(Key key, Node node) {
+    Node existing = canonical.putIfAbsent(key, node);
+    if (existing != null) return existing;
+    ids.put(node, ids.size());
+    return node;
+  }
+
+  private int id(Node node) {
+    return ids.get(node);
+  }
+
+  private static void countRefs(Node node, Map<Node, Integer> refs) {
+    if (refs.merge(node, 1, Integer::sum) > 1) return; // children already counted
+    for (Node child : children(node)) countRefs(child, refs);
+  }
+
+  private Node rebuild(Node node, Map<Node, Integer> refs, Map<Node, Node> rebuilt, int[] memoCount) {
+    Node done = rebuilt.get(node);
+    if (done != null) return done;
+
+    Node out;
+    if (node instanceof Neg n) {
+      out = new Neg(rebuild(n.operand(), refs, rebuilt, memoCount));
+    } else if (node instanceof Binary b) {
+      out = new Binary(b.op(), rebuild(b.left(), refs, rebuilt, memoCount), rebuild(b.right(), refs, rebuilt, memoCount));
+    } else if (node instanceof Call c) {
+      List<Node> args = new ArrayList<>(c.args().size());
+      for (Node arg : c.args()) args.add(rebuild(arg, refs, rebuilt, memoCount));
+      out = new Call(c.fn(), List.copyOf(args));
+    } else {
+      out = node; // Num, Slot: loads are cheaper than a memo check
+    }
+    if (isOperation(node) && refs.get(node) > 1) {
+      int index = memoCount[0]++;
+      out = new Memo(memoBase + index * 2, memoBase + index * 2 + 1, out);
+    }
+    rebuilt.put(node, out);
+    return out;
+  }
+
+  /** Operations evaluated for one item, counting each shared memo body once. */
+  private static int countOperations(Node node, Set<Node> seen) {
+    if (node instanceof Memo m) {
+      return seen.add(m) ? countOperations(m.node(), seen) : 0;
+    }
+    int count = isOperation(node) ? 1 : 0;
+    for (Node child : children(node)) count += countOperations(child, seen);
+    return count;
+  }
+
+  private static boolean isOperation(Node node) {
+    return node instanceof Neg || node instanceof Binary || node instanceof Call;
+  }
+
+  private static List<Node> children(Node node) {
+    if (node instanceof Neg n) return List.of(n.operand());
+    if (node instanceof Binary b) return List.of(b.left(), b.right());
+    if (node instanceof Call c) return c.args();
+    if (node instanceof Memo m) return List.of(m.node());
+    return List.of();
+  }
+}
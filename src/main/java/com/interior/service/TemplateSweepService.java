@@ -0,0 +1,209 @@
+package com.interior.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.interior.dto.MaterialSummary;
+import com.interior.dto.SweepRequest;
+import com.interior.model.Money;
+import com.interior.model.Product;
+import com.interior.model.ProductTemplate;
+import com.interior.model.TemplateParam;
+import com.interior.repository.ProductRepository;
+import com.interior.repository.ProductTemplateRepository;
+import com.interior.repository.TemplateParamRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.stream.IntStream;
+
+/**
+ * Evaluates a template over a cartesian grid of dimensions and params for catalog price
+ * and material tables. Grid points are decoded from their index on demand, evaluated in
+ * parallel chunks and written out row by row, so memory stays bounded by the chunk size.
+ */
+@Service
+public class TemplateSweepService {
+
+  private static final List<String> DIMENSIONS = List.of("W", "H", "D");
+  private static final int CHUNK_SIZE = 2048;
+
+  private final ProductTemplateRepository templateRepository;
+  private final TemplateParamRepository paramRepository;
+  private final ProductRepository productRepository;
+  private final TemplateEngineService templateEngineService;
+  private final PricingService pricingService;
+  private final ObjectMapper objectMapper;
+  private final long maxPoints;
+
+  public TemplateSweepService(ProductTemplateRepository templateRepository,
+                              TemplateParamRepository paramRepository,
+                              ProductRepository productRepository,
+                              TemplateEngineService templateEngineService,
+                              PricingService pricingService,
+                              ObjectMapper objectMapper,
+                              @Value("${interior.sweep.max-points:5000000}") long maxPoints) {
+    this.templateRepository = templateRepository;
+    this.paramRepository = paramRepository;
+    this.productRepository = productRepository;
+    this.templateEngineService = templateEngineService;
+    this.pricingService = pricingService;
+    this.objectMapper = objectMapper;
+    this.maxPoints = maxPoints;
+  }
+
+  /**
+   * Validated sweep, ready to stream. Axes are W, H, D, then params in request order;
+   * the last axis varies fastest.
+   */
+  public record SweepPlan(ProductTemplate template, Product product, List<String> axes,
+                          List<double[]> values, long points) {
+
+    double value(long index, int axis, long[] strides) {
+      double[] v = values.get(axis);
+      return v[(int) ((index / strides[axis]) % v.length)];
+    }
+  }
+
+  /** Check the request against the template and compile it; throws IllegalArgumentException on a bad grid. */
+  public SweepPlan plan(Long templateId, SweepRequest req) {
+    ProductTemplate template = templateRepository.findById(templateId).orElseThrow();
+    Product product = req.getProductId() == null ? null : productRepository.findById(req.getProductId()).orElseThrow();
+    Set<String> params = new HashSet<>();
+    for (TemplateParam p : paramRepository.findByTemplate_IdOrderByParamName(templateId)) params.add(p.getParamName());
+
+    Map<String, SweepRequest.Range> ranges = req.getRanges() == null ? Map.of() : req.getRanges();
+    List<String> axes = new ArrayList<>(DIMENSIONS);
+    for (String name : DIMENSIONS) {
+      if (!ranges.containsKey(name)) throw new IllegalArgumentException("Range required for " + name);
+    }
+    for (String name : ranges.keySet()) {
+      if (DIMENSIONS.contains(name)) continue;
+      if (!params.contains(name)) {
+        throw new IllegalArgumentException("'" + name + "' is not a parameter of template " + template.getCode());
+      }
+      axes.add(name);
+    }
+
+    List<double[]> values = new ArrayList<>(axes.size());
+    long points = 1;
+    for (String axis : axes) {
+      SweepRequest.Range range = ranges.get(axis);
+      // Checked before allocating: a single huge axis must not be materialized
+      long count = count(axis, range);
+      if (count > maxPoints / points) {
+        throw new IllegalArgumentException("Sweep exceeds " + maxPoints + " points");
+      }
+      values.add(expand(range, (int) count));
+      points *= count;
+    }
+
+    templateEngineService.getCompiledTemplate(template); // fail fast on rule errors
+    return new SweepPlan(template, product, List.copyOf(axes), values, points);
+  }
+
+  /** Stream one row per grid point as NDJSON or CSV; failed points carry their error. */
+  public void write(SweepPlan plan, String format, OutputStream out) throws IOException {
+    boolean csv = "csv".equalsIgnoreCase(format);
+    Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+    if (csv) {
+      writer.write(String.join(",", plan.axes()) + ",parts,partAreaMm2,sheets,price,error\n");
+    }
+
+    long[] strides = new long[plan.axes().size()];
+    long stride = 1;
+    for (int a = strides.length - 1; a >= 0; a--) {
+      strides[a] = stride;
+      stride *= plan.values().get(a).length;
+    }
+
+    for (long start = 0; start < plan.points(); start += CHUNK_SIZE) {
+      long base = start;
+      int size = (int) Math.min(CHUNK_SIZE, plan.points() - start);
+      List<Row> rows = templateEngineService.onEvaluationPool(() -> IntStream.range(0, size).parallel()
+          .mapToObj(i -> evaluate(plan, base + i, strides))
+          .toList());
+      for (Row row : rows) {
+        writer.write(csv ? toCsv(row) : toJson(plan, row));
+        writer.write('\n');
+      }
+      writer.flush();
+    }
+  }
+
+  private record Row(double[] point, int parts, double area, int sheets, Double price, String error) {
+  }
+
+  private Row evaluate(SweepPlan plan, long index, long[] strides) {
+    double[] point = new double[plan.axes().size()];
+    for (int a = 0; a < point.length; a++) point[a] = plan.value(index, a, strides);
+
+    Map<String, Double> overrides = new HashMap<>();
+    for (int a = DIMENSIONS.size(); a < point.length; a++) overrides.put(plan.axes().get(a), point[a]);
+
+    try {
+      // Uncached: a sweep touches each point once and would only evict live quote results
+      List<GeneratedPart> generated = templateEngineService.generatePartsUncached(
+          plan.template(), point[0], point[1], point[2], overrides);
+      int parts = 0;
+      double area = 0.0;
+      for (GeneratedPart p : generated) {
+        parts += p.quantity();
+        area += p.cutHeight() * p.cutWidth() * p.quantity();
+      }
+      MaterialSummary sheets = QuotationService.estimateSheets(area);
+      Double price = plan.product() == null ? null
+          : Money.toRupees(pricingService.price(plan.product().getId(),
+              PricingService.Measure.of(1, point[1], point[0], point[2], overrides).withoutPartsCache()).paise());
+      return new Row(point, parts, area, sheets.getSheetCount(), price, null);
+    } catch (RuntimeException e) {
+      return new Row(point, 0, 0.0, 0, null, e.getMessage());
+    }
+  }
+
+  private String toJson(SweepPlan plan, Row row) throws IOException {
+    Map<String, Object> out = new LinkedHashMap<>();
+    for (int a = 0; a < row.point().length; a++) out.put(plan.axes().get(a), row.point()[a]);
+    out.put("parts", row.parts());
+    out.put("partAreaMm2", row.area());
+    out.put("sheets", row.sheets());
+    out.put("price", row.price());
+    out.put("error", row.error());
+    return objectMapper.writeValueAsString(out);
+  }
+
+  private static String toCsv(Row row) {
+    StringBuilder sb = new StringBuilder();
+    for (double v : row.point()) sb.append(v).append(',');
+    sb.append(row.parts()).append(',').append(row.area()).append(',').append(row.sheets()).append(',');
+    if (row.price() != null) sb.append(row.price());
+    sb.append(',');
+    if (row.error() != null) sb.append('"').append(row.error().replace("\"", "\"\"")).append('"');
+    return sb.toString();
+  }
+
+  /** Number of values in the range; throws on a missing, reversed or non-finite range. */
+  private static long count(String name, SweepRequest.Range range) {
+    if (range == null) throw new IllegalArgumentException("Range required for " + name);
+    if (!Double.isFinite(range.getFrom()) || !Double.isFinite(range.getTo()) || !Double.isFinite(range.getStep())) {
+      throw new IllegalArgumentException("Range for " + name + " must have finite from, to and step");
+    }
+    if (range.getTo() < range.getFrom()) {
+      throw new IllegalArgumentException("Range for " + name + " has to < from");
+    }
+    if (range.getTo() > range.getFrom() && range.getStep() <= 0) {
+      throw new IllegalArgumentException("Range for " + name + " needs a positive step");
+    }
+    if (range.getTo() == range.getFrom()) return 1;
+    double steps = Math.floor((range.getTo() - range.getFrom()) / range.getStep() + 1e-9);
+    if (steps >= Integer.MAX_VALUE) throw new IllegalArgumentException("Range for " + name + " is too large");
+    return (long) steps + 1;
+  }
+
+  private static double[] expand(SweepRequest.Range range, int count) {
+    double[] values = new double[count];
+    for (int i = 0; i < values.length; i++) values[i] = range.getFrom() + i * range.getStep();
+    return values;
+  }
+}
@@ -0,0 +1,66 @@
+package com.interior.service;
+
+import java.util.*;
+
+/**
+ * Maps every variable a template can reference to a fixed index of a {@code double[]} frame.
+ * Base variables always occupy the first slots; params, derived vars and any other
+ * referenced names (e.g. override-only variables) follow in declaration order.
+ */
+public final class TemplateSymbolTable {
+
+  public static final int W = 0;
+  public static final int H = 1;
+  public static final int D = 2;
+  public static final int T = 3;
+  public static final int BACK_T = 4;
+  public static final int PLINTH = 5;
+
+  static final List<String> BASE_VARS = List.of("W", "H", "D", "T", "BACK_T", "PLINTH");
+
+  private final Map<String, Integer> slots;
+  private final String[] names;
+
+  private TemplateSymbolTable(LinkedHashMap<String, Integer> slots) {
+    this.slots = slots;
+    this.names = slots.keySet().toArray(new String[0]);
+  }
+
+  /** Frame index of {@code name}, or -1 if the template never references it. */
+  public int slotOf(String name) {
+    Integer slot = slots.get(name);
+    return slot == null ? -1 : slot;
+  }
+
+  public String nameAt(int slot) {
+    return names[slot];
+  }
+
+  public int size() {
+    return names.length;
+  }
+
+  static Builder builder() {
+    return new Builder();
+  }
+
+  static final class Builder {
+    private final LinkedHashMap<String, Integer> slots = new LinkedHashMap<>();
+
+    private Builder() {
+      BASE_VARS.forEach(this::add);
+    }
+
+    int add(String name) {
+      Integer existing = slots.get(name);
+      if (existing != null) return existing;
+      int slot = slots.size();
+      slots.put(name, slot);
+      return slot;
+    }
+
+    TemplateSymbolTable build() {
+      return new TemplateSymbolTable(slots);
+    }
+  }
+}
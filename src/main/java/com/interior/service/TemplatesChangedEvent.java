@@ -0,0 +1,7 @@
+package com.interior.service;
+
+import java.util.Collection;
+
+/** Published when the rules of existing templates were replaced (and their versions bumped). */
+public record TemplatesChangedEvent(Collection<Long> templateIds) {
+}
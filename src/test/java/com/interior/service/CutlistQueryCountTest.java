@@ -0,0 +1,121 @@
+package com.interior.service;
+
+import com.interior.dto.QuoteItemLine;
+import com.interior.model.Area;
+import com.interior.model.Client;
+import com.interior.model.Product;
+import com.interior.model.Project;
+import com.interior.model.Quotation;
+import com.interior.repository.AreaRepository;
+import com.interior.repository.ClientRepository;
+import com.interior.repository.ProductRepository;
+import com.interior.repository.ProjectRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Cutlist generation must not issue per-item queries: the number of statements it runs is the
+ * same for a quotation with a few items as for one with many. Background recompute is off so
+ * only the generation under test touches the database.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE, properties = {
+    "spring.jpa.properties.hibernate.generate_statistics=true",
+    "logging.level.org.hibernate.engine.internal.StatisticalLoggingSessionEventListener=warn",
+    "interior.recompute.enabled=false"
+})
+class CutlistQueryCountTest {
+
+  @Autowired
+  private QuotationService quotationService;
+  @Autowired
+  private ClientRepository clientRepository;
+  @Autowired
+  private ProjectRepository projectRepository;
+  @Autowired
+  private AreaRepository areaRepository;
+  @Autowired
+  private ProductRepository productRepository;
+  @Autowired
+  private EntityManagerFactory entityManagerFactory;
+
+  private Statistics statistics;
+
+  @BeforeEach
+  void setUp() {
+    statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+  }
+
+  @Test
+  void generationQueriesDoNotGrowWithItemCount() {
+    // Templates are compiled and cached on first use; that is paid once, not per item
+    quotationService.generateCutlist(quoteWithItems(5));
+    Long small = quoteWithItems(4);
+    Long large = quoteWithItems(60);
+
+    Counts smallFirst = measure(small);
+    Counts largeFirst = measure(large);
+    // Rows are inserted in JDBC batches, so only reads are compared for a first generation
+    assertThat(largeFirst.queries()).isEqualTo(smallFirst.queries());
+    assertThat(largeFirst.entityFetches()).isEqualTo(smallFirst.entityFetches());
+    assertThat(largeFirst.collectionFetches()).isEqualTo(smallFirst.collectionFetches());
+
+    // Nothing changed: every statement is a read
+    Counts smallAgain = measure(small);
+    Counts largeAgain = measure(large);
+    assertThat(largeAgain.statements()).isEqualTo(smallAgain.statements());
+    assertThat(largeAgain.entityFetches()).isZero();
+  }
+
+  private record Counts(long statements, long queries, long entityFetches, long collectionFetches) {
+  }
+
+  private Counts measure(Long quoteId) {
+    statistics.clear();
+    assertThat(quotationService.generateCutlist(quoteId)).isNotEmpty();
+    return new Counts(statistics.getPrepareStatementCount(), statistics.getQueryExecutionCount(),
+        statistics.getEntityFetchCount(), statistics.getCollectionFetchCount());
+  }
+
+  // Items alternate between templated products and a product without a template (1:1 fallback row)
+  private Long quoteWithItems(int count) {
+    Client client = new Client();
+    client.setName("Query count");
+    client.setPhone("9800000000");
+    client = clientRepository.save(client);
+    Project project = new Project();
+    project.setName("Query count " + count);
+    project.setClient(client);
+    project = projectRepository.save(project);
+    Area area = new Area();
+    area.setName("Kitchen");
+    area.setType("Kitchen");
+    area.setProject(project);
+    area = areaRepository.save(area);
+
+    List<Product> products = productRepository.findAll();
+    List<QuoteItemLine> lines = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      QuoteItemLine line = new QuoteItemLine();
+      line.setAreaId(area.getId());
+      line.setProductId(products.get(i % products.size()).getId());
+      line.setQuantity(1);
+      line.setWidth(600.0 + i);
+      line.setHeight(720.0);
+      line.setDepth(560.0);
+      lines.add(line);
+    }
+    Quotation quotation = quotationService.loadOrCreateDraft(project.getId());
+    quotationService.addItems(quotation.getId(), lines);
+    return quotation.getId();
+  }
+}